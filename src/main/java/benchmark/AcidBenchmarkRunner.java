@@ -0,0 +1,236 @@
+package benchmark;
+
+import driver.TestDriver;
+import history.RecordingTestDriver;
+import transactions.ExecutorMode;
+import transactions.IntervalReporter;
+import transactions.LatencyRecorder;
+import transactions.PinningMonitor;
+import transactions.RetryPolicy;
+import transactions.RetryingTestDriver;
+import transactions.TransactionThread;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs a single ACID workload against a driver with a configurable number of clients and amount of load
+public class AcidBenchmarkRunner {
+
+    protected final TestDriver<?, ?, ?> testDriver;
+    protected final Workload workload;
+    protected final ExecutorMode executorMode;
+    protected final int threads;
+    protected final long transactions;
+    protected final Duration duration;
+    protected final Duration checkInterval;
+    protected final double readRatio;
+    protected final double rate;
+    protected final KeyChooser keys;
+    protected final long seed;
+    protected final boolean printStackTrace;
+    protected final String latencyCsv;
+
+    protected final AtomicLong nextTransactionId = new AtomicLong(1);
+    protected final LongAdder committedWrites = new LongAdder();
+    protected final LongAdder committedReads = new LongAdder();
+    protected final LongAdder aborted = new LongAdder();
+    protected final LongAdder anomalies = new LongAdder();
+    protected final LongAccumulator scheduleLag = new LongAccumulator(Math::max, 0);
+    protected final LatencyRecorder latencyRecorder;
+    protected final Workload.WriteChecker writeChecker;
+
+    public AcidBenchmarkRunner(TestDriver<?, ?, ?> testDriver, BenchmarkOptions options) {
+        this(testDriver, options, new LatencyRecorder(testDriver::classifyAbort));
+    }
+
+    // records the latencies into the given recorder, e.g. the one of a test that exports them after the run
+    public AcidBenchmarkRunner(TestDriver<?, ?, ?> testDriver, BenchmarkOptions options, LatencyRecorder latencyRecorder) {
+        this.testDriver = testDriver;
+        this.latencyRecorder = latencyRecorder;
+        this.workload = options.getWorkload();
+        this.executorMode = options.getExecutorMode();
+        this.threads = options.getThreads();
+        this.transactions = options.getTransactions();
+        this.duration = options.getDuration();
+        this.checkInterval = options.getCheckInterval();
+        this.readRatio = options.getReadRatio(workload);
+        this.rate = options.getRate();
+        this.keys = options.getKeyChooser(workload);
+        this.seed = options.getSeed();
+        this.printStackTrace = options.has("print-stack-trace");
+        this.latencyCsv = options.get("latency-csv", null);
+        this.writeChecker = workload.newWriteChecker(threads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final BenchmarkOptions options;
+        try {
+            options = BenchmarkOptions.parse(args);
+            options.getWorkload();
+            options.require("driver");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(BenchmarkOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final boolean pass;
+        final TestDriver<?, ?, ?> driver = Drivers.create(options);
+        final TestDriver<?, ?, ?> recordingDriver = options.has("history") ? RecordingTestDriver.wrap(driver, Paths.get(options.get("history", null))) : driver;
+        // retries outside of the recording, so that the history has the aborted attempts as failed transactions
+        final RetryPolicy retryPolicy = options.getRetryPolicy();
+        try (TestDriver<?, ?, ?> testDriver = retryPolicy.isEnabled() ? RetryingTestDriver.wrap(recordingDriver, retryPolicy) : recordingDriver) {
+            pass = new AcidBenchmarkRunner(testDriver, options).run();
+        }
+        System.exit(pass ? 0 : 1);
+    }
+
+    public boolean run() throws Exception {
+        final long resetStart = System.nanoTime();
+        testDriver.nukeDatabase();
+        final long initStart = System.nanoTime();
+        workload.init(testDriver, keys);
+        System.out.printf("Reset: %.1f ms, init: %.1f ms\n", (initStart - resetStart) / 1e6, (System.nanoTime() - initStart) / 1e6);
+
+        System.out.printf("Workload: %s (%s), clients: %d (%s), %s, %s, read ratio: %.2f, seed: %d\n",
+                workload, keys, threads, executorMode.name().toLowerCase(),
+                duration == null ? transactions + " transactions" : duration.getSeconds() + " s",
+                rate > 0 ? String.format("open loop at %.1f tx/s", rate) : "closed loop",
+                readRatio, seed);
+        if (testDriver.getIsolationLevel() != null) {
+            System.out.printf("Isolation level: %s\n", testDriver.getIsolationLevel().name().toLowerCase());
+        }
+
+        final ExecutorService executorService = executorMode.newExecutorService(threads);
+        final PinningMonitor pinningMonitor = executorMode == ExecutorMode.VIRTUAL ? PinningMonitor.start() : null;
+        final long start = System.nanoTime();
+        final long deadline = duration == null ? Long.MAX_VALUE : start + duration.toNanos();
+        final IntervalReporter intervalReporter = checkInterval == null ? null : IntervalReporter.start(checkInterval,
+                () -> committedWrites.sum() + committedReads.sum(), aborted::sum, () -> workload.checkInvariant(testDriver, keys));
+        if (rate > 0) {
+            runOpenLoop(executorService, start, deadline);
+        } else {
+            for (int i = 0; i < threads; i++) {
+                final Random random = new Random(seed + i);
+                executorService.submit(() -> runClient(random, deadline));
+            }
+        }
+        executorService.shutdown();
+        executorService.awaitTermination(365, TimeUnit.DAYS);
+        final long elapsed = System.nanoTime() - start;
+        if (intervalReporter != null) {
+            intervalReporter.close();
+            if (intervalReporter.getFailedChecks() > 0) {
+                System.out.printf("Invariant violated in %d checks during the run\n", intervalReporter.getFailedChecks());
+                anomalies.add(intervalReporter.getFailedChecks());
+            }
+        }
+
+        report(elapsed);
+        if (pinningMonitor != null) {
+            pinningMonitor.stop();
+            pinningMonitor.printReport(System.out);
+            pinningMonitor.close();
+        }
+
+        final boolean pass = workload.check(testDriver, committedWrites.sum(), keys) && anomalies.sum() == 0
+                && (writeChecker == null || writeChecker.check());
+        System.out.printf("Result: %s\n", pass ? "PASS" : "FAIL");
+        return pass;
+    }
+
+    protected void runClient(Random random, long deadline) {
+        while (true) {
+            final long transactionId = nextTransactionId.getAndIncrement();
+            if (duration == null ? transactionId > transactions : System.nanoTime() - deadline >= 0) {
+                return;
+            }
+            final boolean read = isRead(random);
+            execute(newTransaction(transactionId, read, random, TransactionThread.START_WHEN_CALLED), read);
+        }
+    }
+
+    // issues transactions at a fixed rate regardless of how fast they complete, so stalls of the database
+    // show up as latency (measured from the intended start) instead of as a lower offered load
+    protected void runOpenLoop(ExecutorService executorService, long start, long deadline) {
+        final double interval = 1e9 / rate;
+        final Random random = new Random(seed);
+        for (long i = 0; ; i++) {
+            final long transactionId = nextTransactionId.getAndIncrement();
+            final long intendedStart = start + (long) (i * interval);
+            if (duration == null ? transactionId > transactions : intendedStart - deadline >= 0) {
+                return;
+            }
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            scheduleLag.accumulate(System.nanoTime() - intendedStart);
+
+            final boolean read = isRead(random);
+            final TransactionThread<Map<String, Object>, Map<String, Object>> transaction = newTransaction(transactionId, read, random, intendedStart);
+            executorService.execute(() -> execute(transaction, read));
+        }
+    }
+
+    protected boolean isRead(Random random) {
+        return readRatio > 0 && random.nextDouble() < readRatio;
+    }
+
+    protected TransactionThread<Map<String, Object>, Map<String, Object>> newTransaction(long transactionId, boolean read, Random random, long intendedStart) {
+        return read ?
+                new TransactionThread<>(transactionId, p -> workload.read(testDriver, p), workload.readParameters(transactionId, random, keys), latencyRecorder, intendedStart) :
+                new TransactionThread<>(transactionId, p -> workload.write(testDriver, p), workload.writeParameters(transactionId, random, keys), latencyRecorder, intendedStart);
+    }
+
+    protected void execute(TransactionThread<Map<String, Object>, Map<String, Object>> transaction, boolean read) {
+        try {
+            final Map<String, Object> results = transaction.call();
+            if (read) {
+                committedReads.increment();
+                if (!workload.validateRead(results)) {
+                    anomalies.increment();
+                }
+            } else {
+                committedWrites.increment();
+                if (writeChecker != null) writeChecker.committed(transaction.getTransactionId(), results);
+            }
+        } catch (Exception e) {
+            aborted.increment();
+            if (!read && writeChecker != null) writeChecker.aborted(transaction.getTransactionId());
+            if (printStackTrace) e.printStackTrace();
+        }
+    }
+
+    protected void report(long elapsedNanos) throws Exception {
+        final long committed = committedWrites.sum() + committedReads.sum();
+        final double seconds = elapsedNanos / 1e9;
+        System.out.printf("Committed writes: %d, committed reads: %d, aborted: %d, anomalies: %d\n",
+                committedWrites.sum(), committedReads.sum(), aborted.sum(), anomalies.sum());
+        System.out.printf("Elapsed: %.3f s, throughput: %.1f tx/s, abort rate: %.2f%%\n",
+                seconds, committed / seconds, 100.0 * aborted.sum() / Math.max(1, committed + aborted.sum()));
+        if (rate > 0) {
+            System.out.printf("Offered load: %.1f tx/s, max schedule lag: %.3f ms\n", rate, scheduleLag.get() / 1e6);
+        }
+        latencyRecorder.printReport(System.out);
+        if (testDriver instanceof RetryingTestDriver) {
+            ((RetryingTestDriver<?, ?, ?>) testDriver).printReport(System.out, elapsedNanos);
+        }
+        if (!testDriver.getStatistics().isEmpty()) {
+            System.out.printf("Driver: %s\n", testDriver.getStatistics());
+        }
+        if (latencyCsv != null) {
+            latencyRecorder.exportCsv(Paths.get(latencyCsv), testDriver.getClass().getSimpleName(), workload.name());
+        }
+    }
+
+}
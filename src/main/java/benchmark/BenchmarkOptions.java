@@ -0,0 +1,179 @@
+package benchmark;
+
+import transactions.ExecutorMode;
+import transactions.RetryPolicy;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Command line options of AcidBenchmarkRunner, given as --name=value pairs
+public class BenchmarkOptions {
+
+    public static final String USAGE = "Usage: acid-benchmark --driver=<neo4j|memgraph|dgraph|janusgraph|postgres|tigergraph> --workload=<name> [options]\n" +
+            "  --workload=<name>      one of atomicity, g0, g1a, g1b, g1c, imp, pmp, otv, fr, lu, ws\n" +
+            "  --threads=<n>          number of concurrent clients (default: 8)\n" +
+            "  --executor=<mode>      fixed (platform thread pool) or virtual (one virtual thread per client, JDK 21)\n" +
+            "  --transactions=<n>     number of transactions to run (default: 200)\n" +
+            "  --duration=<time>      run for a wall-clock duration instead, e.g. 90s, 10m, 2h\n" +
+            "  --read-ratio=<r>       fraction of reader transactions, 0..1 (default: workload specific)\n" +
+            "  --rate=<tx/s>          open loop: start transactions at this fixed rate instead of back-to-back,\n" +
+            "                         latencies are measured from the scheduled start\n" +
+            "  --check-interval=<time> with --duration: report the throughput and check the invariant of the\n" +
+            "                         workload (lu, g0) at this interval while the run continues, e.g. 30s\n" +
+            "  --keys=<n>             key space of g0 and ws (person pairs) and imp (persons)\n" +
+            "  --distribution=<d>     uniform, zipfian or hotspot choice of the keys (default: uniform)\n" +
+            "  --theta=<t>            skew of the zipfian distribution, 0..1 (default: 0.99)\n" +
+            "  --hot-fraction=<f>     share of hot keys of the hotspot distribution (default: 0.01)\n" +
+            "  --hot-probability=<p>  share of transactions on the hot keys (default: 0.9)\n" +
+            "  --seed=<n>             seed for the parameter generators\n" +
+            "  --latency-csv=<file>   append the latency percentiles to a CSV file\n" +
+            "  --retries=<n>          re-execute a transaction aborted by a conflict up to n times in total (default: 1,\n" +
+            "                         i.e. no retries) and report the goodput and the attempts per commit;\n" +
+            "                         --backoff=<time> (5ms) and --max-backoff=<time> (1s) bound the jittered pauses\n" +
+            "  --history=<file>       record every transaction as binary events in a memory-mapped history log\n" +
+            "  --isolation=<level>    postgres, janusgraph: read_committed, repeatable_read, serializable\n" +
+            "                         (janusgraph also read_uncommitted)\n" +
+            "  --schema=<profile>     postgres: plain (no keys) or indexed (unique indexes on the ids and the edges)\n" +
+            "  --background-persons=<n> postgres: preload n persons (ids from 10^9 on) with their knows edges,\n" +
+            "                         n/10 posts and their likes; --background-degree=<d> edges per person (10)\n" +
+            "  --reset=<mode>         postgres: drop the tables (drop), truncate them (truncate) or copy the database\n" +
+            "                         from a template with the schema and background data (template)\n" +
+            "  --mode=<mode>          postgres: round_trip (one statement at a time) or function (every operation is\n" +
+            "                         one call of a PL/pgSQL function)\n" +
+            "  --server-profile=<p>   postgres: strict, group-commit, async-commit or unlogged durability settings of\n" +
+            "                         the server (needs a superuser); --wal-sync-method=<method> also sets wal_sync_method\n" +
+            "  --locking=<mode>       postgres: how lu, imp and ws writers prevent lost updates and write skew:\n" +
+            "                         optimistic (the isolation level), for_update, for_no_key_update or advisory\n" +
+            "  --batch=true           postgres: send the statements of a write transaction in one round trip\n" +
+            "  --pool=<n>             postgres: size of the connection pool, 0 opens a connection per transaction\n" +
+            "                         (default: 100)\n" +
+            "  --host, --port, --user, --password, --database, --graph\n" +
+            "                         connection settings of the selected driver";
+
+    private final Map<String, String> values;
+
+    public BenchmarkOptions(Map<String, String> values) {
+        this.values = values;
+    }
+
+    public static BenchmarkOptions parse(String[] args) {
+        final Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            final int eq = arg.indexOf('=');
+            if (eq < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return new BenchmarkOptions(values);
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public String require(String name) {
+        final String value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing option --" + name);
+        }
+        return value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    public long getLong(String name, long defaultValue) {
+        return values.containsKey(name) ? Long.parseLong(values.get(name)) : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    public Duration getDuration(String name, Duration defaultValue) {
+        return values.containsKey(name) ? parseDuration(values.get(name)) : defaultValue;
+    }
+
+    // accepts plain seconds ("90") or a number with an ms/s/m/h suffix ("500ms", "10m")
+    public static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        if (value.endsWith("s"))  return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("m"))  return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("h"))  return Duration.ofHours(Long.parseLong(value.substring(0, value.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        if (!has("retries")) return RetryPolicy.fromSystemProperties();
+        return new RetryPolicy(getInt("retries", 1),
+                getDuration("backoff", parseDuration(System.getProperty("acid.retry.backoff", "5ms"))),
+                getDuration("max-backoff", parseDuration(System.getProperty("acid.retry.maxBackoff", "1s"))));
+    }
+
+    public Workload getWorkload() {
+        return Workload.valueOf(require("workload").toUpperCase());
+    }
+
+    public ExecutorMode getExecutorMode() {
+        return ExecutorMode.valueOf(get("executor", "fixed").toUpperCase());
+    }
+
+    public int getThreads() {
+        return getInt("threads", 8);
+    }
+
+    public long getTransactions() {
+        return getLong("transactions", 200);
+    }
+
+    // null if the run is bounded by the number of transactions
+    public Duration getDuration() {
+        return getDuration("duration", null);
+    }
+
+    // null if the workload is only checked at the end of the run
+    public Duration getCheckInterval() {
+        return getDuration("check-interval", null);
+    }
+
+    public double getReadRatio(Workload workload) {
+        final double readRatio = getDouble("read-ratio", workload.getDefaultReadRatio());
+        if (readRatio < 0 || readRatio > 1) {
+            throw new IllegalArgumentException("--read-ratio must be between 0 and 1");
+        }
+        if (readRatio > 0 && !workload.hasReader()) {
+            throw new IllegalArgumentException(workload + " has no reader transaction");
+        }
+        return readRatio;
+    }
+
+    // target arrival rate of the open-loop mode in transactions per second, 0 for the closed-loop mode
+    public double getRate() {
+        return getDouble("rate", 0);
+    }
+
+    public KeyChooser getKeyChooser(Workload workload) {
+        return KeyChooser.create(
+                KeyChooser.Distribution.valueOf(get("distribution", "uniform").toUpperCase()),
+                getLong("keys", workload.getDefaultKeyCount()),
+                getDouble("theta", 0.99),
+                getDouble("hot-fraction", 0.01),
+                getDouble("hot-probability", 0.9));
+    }
+
+    public long getSeed() {
+        return getLong("seed", System.nanoTime());
+    }
+
+}
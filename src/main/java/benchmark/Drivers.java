@@ -0,0 +1,76 @@
+package benchmark;
+
+import bolt.BoltDriver;
+import dgraph.DgraphDriver;
+import driver.IsolationLevel;
+import driver.TestDriver;
+import janusgraph.JanusGraphDriver;
+import postgres.PostgresDriver;
+import tigergraph.TigergraphDriver;
+
+// Creates the driver selected with --driver, using the same defaults as the JUnit test classes
+public final class Drivers {
+
+    private Drivers() {
+    }
+
+    public static TestDriver<?, ?, ?> create(BenchmarkOptions options) {
+        final String name = options.require("driver");
+        switch (name) {
+            case "neo4j":
+                return new BoltDriver(options.getInt("port", 7687));
+            case "memgraph":
+                return new BoltDriver(options.getInt("port", 17687));
+            case "dgraph":
+                return new DgraphDriver();
+            case "janusgraph":
+                return new JanusGraphDriver(options.has("isolation")
+                        ? IsolationLevel.parse(options.require("isolation"))
+                        : IsolationLevel.fromSystemProperties(null));
+            case "tigergraph":
+                return new TigergraphDriver(
+                        options.get("host", "http://localhost:9000"),
+                        options.get("graph", "ldbc_acid"));
+            case "postgres":
+                final PostgresDriver postgresDriver = new PostgresDriver();
+                postgresDriver.initDataSource(
+                        options.get("host", "localhost"),
+                        options.getInt("port", 5432),
+                        options.get("user", "postgres"),
+                        options.get("password", "postgres"),
+                        options.get("database", "postgres"),
+                        options.getInt("pool", Integer.getInteger("acid.postgres.pool", 100)));
+                if (options.has("isolation")) {
+                    postgresDriver.setIsolationLevel(IsolationLevel.parse(options.require("isolation")));
+                }
+                if (options.has("schema") || options.has("background-persons")) {
+                    postgresDriver.setSchemaProfile(
+                            PostgresDriver.SchemaProfile.valueOf(options.get("schema", "plain").toUpperCase()),
+                            options.getLong("background-persons", 0), options.getLong("background-degree", 10));
+                }
+                if (options.has("mode")) {
+                    postgresDriver.setExecutionMode(PostgresDriver.ExecutionMode.valueOf(options.require("mode").toUpperCase()));
+                }
+                if (options.has("server-profile")) {
+                    postgresDriver.setServerProfile(
+                            PostgresDriver.ServerProfile.valueOf(options.require("server-profile").toUpperCase().replace('-', '_')),
+                            options.get("wal-sync-method", System.getProperty("acid.postgres.walSyncMethod")));
+                }
+                // the durability settings of --server-profile or -Dacid.postgres.serverProfile, if any
+                postgresDriver.applyServerProfile();
+                if (options.has("locking")) {
+                    postgresDriver.setLockingMode(PostgresDriver.LockingMode.valueOf(options.require("locking").toUpperCase()));
+                }
+                if (options.has("batch")) {
+                    postgresDriver.setBatchStatements(Boolean.parseBoolean(options.require("batch")));
+                }
+                if (options.has("reset")) {
+                    postgresDriver.setResetMode(PostgresDriver.ResetMode.valueOf(options.require("reset").toUpperCase()));
+                }
+                return postgresDriver;
+            default:
+                throw new IllegalArgumentException("Unknown driver: " + name);
+        }
+    }
+
+}
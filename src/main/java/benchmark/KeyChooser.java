@@ -0,0 +1,115 @@
+package benchmark;
+
+import java.util.Random;
+
+// Picks the keys (person ids or person pairs) of the conflict workloads, numbered from 1 to the key count.
+// The skew of the distribution controls how much the transactions contend on the same keys.
+public abstract class KeyChooser {
+
+    public enum Distribution { UNIFORM, ZIPFIAN, HOTSPOT }
+
+    protected final long keyCount;
+
+    protected KeyChooser(long keyCount) {
+        if (keyCount < 1) {
+            throw new IllegalArgumentException("The key count must be at least 1");
+        }
+        this.keyCount = keyCount;
+    }
+
+    public long getKeyCount() {
+        return keyCount;
+    }
+
+    // a key between 1 and the key count
+    public abstract long next(Random random);
+
+    public static KeyChooser uniform(long keyCount) {
+        return new KeyChooser(keyCount) {
+            @Override
+            public long next(Random random) {
+                return 1 + (long) (random.nextDouble() * keyCount);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("%d keys, uniform", keyCount);
+            }
+        };
+    }
+
+    // key k is chosen with a probability proportional to 1 / k^theta, following the generator of YCSB
+    // (Gray et al., Quickly Generating Billion-Record Synthetic Databases)
+    public static KeyChooser zipfian(long keyCount, double theta) {
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("The Zipfian theta must be between 0 and 1 (exclusive)");
+        }
+        double zetaN = 0;
+        for (long i = 1; i <= keyCount; i++) {
+            zetaN += 1 / Math.pow(i, theta);
+        }
+        final double zeta2 = 1 + 1 / Math.pow(2, theta);
+        final double alpha = 1 / (1 - theta);
+        final double eta = (1 - Math.pow(2.0 / keyCount, 1 - theta)) / (1 - zeta2 / zetaN);
+        final double zetaNFinal = zetaN;
+        return new KeyChooser(keyCount) {
+            @Override
+            public long next(Random random) {
+                final double u = random.nextDouble();
+                final double uz = u * zetaNFinal;
+                if (uz < 1) return 1;
+                if (uz < zeta2 || keyCount == 2) return Math.min(2, keyCount);
+                return Math.min(keyCount, 1 + (long) (keyCount * Math.pow(eta * u - eta + 1, alpha)));
+            }
+
+            @Override
+            public String toString() {
+                return String.format("%d keys, zipfian theta=%.2f", keyCount, theta);
+            }
+        };
+    }
+
+    // a hotProbability share of the transactions goes to the first hotFraction of the keys, the rest to the others
+    public static KeyChooser hotspot(long keyCount, double hotFraction, double hotProbability) {
+        if (hotFraction <= 0 || hotFraction > 1 || hotProbability < 0 || hotProbability > 1) {
+            throw new IllegalArgumentException("The hot fraction must be in (0, 1] and the hot probability in [0, 1]");
+        }
+        final long hotKeys = Math.max(1, (long) (keyCount * hotFraction));
+        return new KeyChooser(keyCount) {
+            @Override
+            public long next(Random random) {
+                if (hotKeys == keyCount || random.nextDouble() < hotProbability) {
+                    return 1 + (long) (random.nextDouble() * hotKeys);
+                }
+                return hotKeys + 1 + (long) (random.nextDouble() * (keyCount - hotKeys));
+            }
+
+            @Override
+            public String toString() {
+                return String.format("%d keys, hotspot %.1f%% of the transactions on %d keys", keyCount, 100 * hotProbability, hotKeys);
+            }
+        };
+    }
+
+    public static KeyChooser create(Distribution distribution, long keyCount, double theta, double hotFraction, double hotProbability) {
+        switch (distribution) {
+            case ZIPFIAN:
+                return zipfian(keyCount, theta);
+            case HOTSPOT:
+                return hotspot(keyCount, hotFraction, hotProbability);
+            default:
+                return uniform(keyCount);
+        }
+    }
+
+    // -Dacid.keys, -Dacid.distribution=uniform|zipfian|hotspot, -Dacid.zipfTheta, -Dacid.hotFraction, -Dacid.hotProbability
+    public static KeyChooser fromSystemProperties(long defaultKeyCount) {
+        return create(
+                Distribution.valueOf(System.getProperty("acid.distribution", "uniform").toUpperCase()),
+                Long.getLong("acid.keys", defaultKeyCount),
+                Double.parseDouble(System.getProperty("acid.zipfTheta", "0.99")),
+                Double.parseDouble(System.getProperty("acid.hotFraction", "0.01")),
+                Double.parseDouble(System.getProperty("acid.hotProbability", "0.9")));
+    }
+
+}
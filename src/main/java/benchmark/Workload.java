@@ -0,0 +1,473 @@
+package benchmark;
+
+import checker.G0Checker;
+import checker.G1cOnlineChecker;
+import checker.WriteSkewChecker;
+import com.google.common.collect.ImmutableMap;
+import driver.TestDriver;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// The ACID test workloads of AcidTest, exposed as writer/reader operations so they can be run at arbitrary load
+public enum Workload {
+
+    ATOMICITY(0.0) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.atomicityInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("person1Id", 1L, "person2Id", transactionId + 3L, "newEmail", "alice@otherdomain.net", "since", 2020);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            driver.atomicityC(parameters);
+            return ImmutableMap.of();
+        }
+
+        @Override
+        public boolean check(TestDriver<?, ?, ?> driver, long committedWrites, KeyChooser keys) {
+            final Map<String, Object> results = driver.atomicityCheck();
+            final long numPersons = (long) results.get("numPersons");
+            final boolean pass = numPersons == committedWrites + 2;
+            System.out.printf("ATOMICITY: %4d %4d %5b\n", committedWrites + 2, numPersons, pass);
+            return pass;
+        }
+    },
+
+    G0(0.0, 1) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.g0Init(keys.getKeyCount());
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            final long pair = keys.next(random);
+            return ImmutableMap.of("person1Id", 2 * pair - 1, "person2Id", 2 * pair, "transactionId", (int) transactionId);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.g0(parameters);
+        }
+
+        @Override
+        public boolean check(TestDriver<?, ?, ?> driver, long committedWrites, KeyChooser keys) {
+            return checkInvariant(driver, keys);
+        }
+
+        @Override
+        public boolean checkInvariant(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            boolean pass = true;
+            for (long pair = 1; pair <= keys.getKeyCount(); pair++) {
+                final Map<String, Object> results = driver.g0check(ImmutableMap.of("person1Id", 2 * pair - 1, "person2Id", 2 * pair));
+                if (!results.containsKey("p1VersionHistory")) continue;
+
+                final G0Checker.Result result = G0Checker.check(results);
+                if (!result.isConsistent() || keys.getKeyCount() == 1) {
+                    System.out.printf("G0:    %4d %s %5b\n", pair, result, result.isConsistent());
+                }
+                pass &= result.isConsistent();
+            }
+            return pass;
+        }
+    },
+
+    G1A(0.5) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.g1aInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L, "sleepTime", 250L);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.g1aW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.g1aR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            return !results.containsKey("pVersion") || (long) results.get("pVersion") == 1L;
+        }
+    },
+
+    G1B(100.0 / 110.0) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.g1bInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L, "even", 0L, "odd", 1L, "sleepTime", 1L);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.g1bW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.g1bR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            return !results.containsKey("pVersion") || (long) results.get("pVersion") % 2 == 1;
+        }
+    },
+
+    G1C(0.0) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.g1cInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            final boolean order = random.nextBoolean();
+            return ImmutableMap.of("person1Id", order ? 1L : 2L, "person2Id", order ? 2L : 1L, "transactionId", transactionId);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.g1c(parameters);
+        }
+
+        @Override
+        public WriteChecker newWriteChecker(int threads) {
+            // every write reads the id of the transaction it read from, see AcidTest.g1cTest
+            final G1cOnlineChecker checker = new G1cOnlineChecker(Math.max(1 << 16, 4 * threads));
+            return new WriteChecker() {
+                @Override
+                public synchronized void committed(long transactionId, Map<String, Object> results) {
+                    if (results.containsKey("person2Version")) {
+                        checker.committed(transactionId, (long) results.get("person2Version"));
+                    } else {
+                        checker.aborted(transactionId);
+                    }
+                }
+
+                @Override
+                public synchronized void aborted(long transactionId) {
+                    checker.aborted(transactionId);
+                }
+
+                @Override
+                public synchronized boolean check() {
+                    final boolean pass = checker.isConsistent() && checker.getPending() == 0;
+                    System.out.printf("G1c:   %4d %4d %4d %4d %5b\n", checker.getCommitted(), checker.getCycles(),
+                            checker.getAbortedReads(), checker.getPending(), pass);
+                    return pass;
+                }
+            };
+        }
+    },
+
+    IMP(0.5, 1) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.impInit(keys.getKeyCount());
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", keys.next(random));
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.impW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", keys.next(random), "sleepTime", 250L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.impR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            return !results.containsKey("firstRead") || results.get("firstRead").equals(results.get("secondRead"));
+        }
+    },
+
+    PMP(0.5) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.pmpInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L, "postId", 1L);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.pmpW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L, "postId", 1L, "sleepTime", 250L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.pmpR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            return !results.containsKey("firstRead") || results.get("firstRead").equals(results.get("secondRead"));
+        }
+    },
+
+    OTV(50.0 / 51.0) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.otvInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("cycleSize", 4);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.otvW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", random.nextInt(4) + 1, "sleepTime", 250L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.otvR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            if (!results.containsKey("firstRead")) return true;
+            final List<Long> firstRead  = (List<Long>) results.get("firstRead");
+            final List<Long> secondRead = (List<Long>) results.get("secondRead");
+            return Collections.max(firstRead) <= Collections.min(secondRead);
+        }
+    },
+
+    FR(100.0 / 101.0) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.frInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.frW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L, "sleepTime", 250L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.frR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            return !results.containsKey("firstRead") || results.get("firstRead").equals(results.get("secondRead"));
+        }
+    },
+
+    LU(0.0) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.luInit();
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("person1Id", 1L, "person2Id", transactionId + 2L);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.luW(parameters);
+        }
+
+        @Override
+        public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+            return ImmutableMap.of("personId", 1L);
+        }
+
+        @Override
+        public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.luR(parameters);
+        }
+
+        @Override
+        public boolean validateRead(Map<String, Object> results) {
+            return results.get("numFriendsProp").equals(results.get("numKnowsEdges"));
+        }
+
+        @Override
+        public boolean checkInvariant(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            return validateRead(driver.luR(ImmutableMap.of("personId", 1L)));
+        }
+
+        @Override
+        public boolean check(TestDriver<?, ?, ?> driver, long committedWrites, KeyChooser keys) {
+            final Map<String, Object> results = driver.luR(ImmutableMap.of("personId", 1L));
+            final long numFriendsProp = (long) results.get("numFriendsProp");
+            final long numKnowsEdges = (long) results.get("numKnowsEdges");
+            final boolean pass = committedWrites == numFriendsProp && committedWrites == numKnowsEdges;
+            System.out.printf("LU:    %4d %4d %4d %5b\n", committedWrites, numFriendsProp, numKnowsEdges, pass);
+            return pass;
+        }
+    },
+
+    WS(0.0, 10) {
+        @Override
+        public void init(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+            driver.wsInit(keys.getKeyCount());
+        }
+
+        @Override
+        public Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys) {
+            // person1 indices range from 1 to 2*numPersonPairs-1
+            final long person1Id = keys.next(random) * 2 - 1;
+            return ImmutableMap.of("person1Id", person1Id, "person2Id", person1Id + 1, "sleepTime", 250L);
+        }
+
+        @Override
+        public Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+            return driver.wsW(parameters);
+        }
+
+        @Override
+        public boolean check(TestDriver<?, ?, ?> driver, long committedWrites, KeyChooser keys) {
+            final List<Map<String, Object>> violations;
+            try {
+                violations = WriteSkewChecker.fromSystemProperties().check(driver, keys.getKeyCount());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            System.out.printf("WS:    %s %5b\n", violations, violations.isEmpty());
+            return violations.isEmpty();
+        }
+    };
+
+    // checks the results of the write transactions of a run as they complete, called by the clients concurrently
+    public interface WriteChecker {
+        void committed(long transactionId, Map<String, Object> results);
+
+        void aborted(long transactionId);
+
+        // called after all transactions completed
+        boolean check();
+    }
+
+    private final double defaultReadRatio;
+    private final long defaultKeyCount;
+
+    Workload(double defaultReadRatio) {
+        this(defaultReadRatio, 1);
+    }
+
+    // the conflict workloads G0, IMP and WS choose their keys (person pairs or persons) with a KeyChooser
+    Workload(double defaultReadRatio, long defaultKeyCount) {
+        this.defaultReadRatio = defaultReadRatio;
+        this.defaultKeyCount = defaultKeyCount;
+    }
+
+    public double getDefaultReadRatio() {
+        return defaultReadRatio;
+    }
+
+    public long getDefaultKeyCount() {
+        return defaultKeyCount;
+    }
+
+    public abstract void init(TestDriver<?, ?, ?> driver, KeyChooser keys);
+
+    public abstract Map<String, Object> writeParameters(long transactionId, Random random, KeyChooser keys);
+
+    public abstract Map<String, Object> write(TestDriver<?, ?, ?> driver, Map<String, Object> parameters);
+
+    public boolean hasReader() {
+        return readParameters(0, new Random(), KeyChooser.uniform(1)) != null;
+    }
+
+    // workloads without a reader transaction return null
+    public Map<String, Object> readParameters(long transactionId, Random random, KeyChooser keys) {
+        return null;
+    }
+
+    public Map<String, Object> read(TestDriver<?, ?, ?> driver, Map<String, Object> parameters) {
+        throw new UnsupportedOperationException(name() + " has no reader transaction");
+    }
+
+    // null if the workload only checks reader results and the database state
+    public WriteChecker newWriteChecker(int threads) {
+        return null;
+    }
+
+    // checks a single reader result for the anomaly of the workload
+    public boolean validateRead(Map<String, Object> results) {
+        return true;
+    }
+
+    // checks a property of the database state that holds at any time, even while transactions are running
+    public boolean checkInvariant(TestDriver<?, ?, ?> driver, KeyChooser keys) {
+        return true;
+    }
+
+    // checks the database state after all transactions finished
+    public boolean check(TestDriver<?, ?, ?> driver, long committedWrites, KeyChooser keys) {
+        return true;
+    }
+
+}
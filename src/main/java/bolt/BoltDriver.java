@@ -3,6 +3,8 @@ package bolt;
 import com.google.common.collect.ImmutableMap;
 import driver.TestDriver;
 import org.neo4j.driver.v1.*;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import transactions.AbortCause;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -49,6 +51,29 @@ public class BoltDriver extends TestDriver<Transaction, Map<String, Object>, Sta
         tt.close();
     }
 
+    @Override
+    protected AbortCause classifyException(Throwable t) {
+        if (t instanceof TransientException) {
+            final String code = ((TransientException) t).code();
+            if (code.endsWith("DeadlockDetected")) {
+                return AbortCause.DEADLOCK;
+            }
+            if (code.endsWith("LockAcquisitionTimeout") || code.endsWith("LockClientStopped")) {
+                return AbortCause.LOCK_TIMEOUT;
+            }
+            // Neo4j's outdated snapshot, Memgraph's "Cannot resolve conflicting transactions" and serialization errors
+            final String message = String.valueOf(t.getMessage());
+            if (code.endsWith("Transaction.Outdated") || message.contains("conflicting transactions")
+                    || message.contains("serialization error")) {
+                return AbortCause.SERIALIZATION_FAILURE;
+            }
+            // other transient errors, e.g. DatabaseUnavailable, TransactionTerminated or running out of memory,
+            // are not conflicts and must not be retried as such
+            return AbortCause.OTHER;
+        }
+        return super.classifyException(t);
+    }
+
     @Override
     public StatementResult runQuery(Transaction tt, String querySpecification, Map<String, Object> queryParameters) {
         return tt.run(querySpecification, queryParameters);
@@ -112,9 +137,11 @@ public class BoltDriver extends TestDriver<Transaction, Map<String, Object>, Sta
     }
 
     @Override
-    public void g0Init() {
+    public void g0Init(long numPairs) {
         final Transaction tt = startTransaction();
-        tt.run("CREATE (:Person {id: 1, versionHistory: [0]})-[:KNOWS {versionHistory: [0]}]->(:Person {id: 2, versionHistory: [0]})");
+        tt.run("UNWIND range(1, $numPairs) AS i " +
+                "CREATE (:Person {id: 2*i-1, versionHistory: [0]})-[:KNOWS {versionHistory: [0]}]->(:Person {id: 2*i, versionHistory: [0]})",
+                ImmutableMap.of("numPairs", numPairs));
         commitTransaction(tt);
     }
 
@@ -243,9 +270,9 @@ public class BoltDriver extends TestDriver<Transaction, Map<String, Object>, Sta
     // IMP
 
     @Override
-    public void impInit() {
+    public void impInit(long numPersons) {
         final Transaction tt = startTransaction();
-        tt.run("CREATE (:Person {id: 1, version: 1})");
+        tt.run("UNWIND range(1, $numPersons) AS id CREATE (:Person {id: id, version: 1})", ImmutableMap.of("numPersons", numPersons));
         commitTransaction(tt);
     }
 
@@ -429,16 +456,19 @@ public class BoltDriver extends TestDriver<Transaction, Map<String, Object>, Sta
     }
 
     @Override
-    public void wsInit() {
-        final Transaction tt = startTransaction();
+    public void wsInit(long numPairs) {
+        final Transaction index = startTransaction();
+        index.run("CREATE INDEX ON :Person(id)");
+        commitTransaction(index);
 
-        // create 10 pairs of persons with indices (1,2), ..., (19,20)
-        for (int i = 1; i <= 10; i++) {
-            tt.run("CREATE (:Person {id: $person1Id, value: 70}), (:Person {id: $person2Id, value: 80})",
-                    ImmutableMap.of("person1Id", 2*i-1, "person2Id", 2*i));
-        }
-
-        commitTransaction(tt);
+        // create pairs of persons with indices (1,2), ..., (2*numPairs-1,2*numPairs), loading blocks of pairs in parallel
+        forEachPairBlock(numPairs, 10_000, getParallelism(), (firstPair, lastPair) -> {
+            final Transaction tt = startTransaction();
+            tt.run("UNWIND range($firstPair, $lastPair) AS i\n" +
+                    "CREATE (:Person {id: 2*i-1, value: 70}), (:Person {id: 2*i, value: 80})",
+                    ImmutableMap.of("firstPair", firstPair, "lastPair", lastPair));
+            commitTransaction(tt);
+        });
     }
 
     @Override
@@ -471,20 +501,27 @@ public class BoltDriver extends TestDriver<Transaction, Map<String, Object>, Sta
     public Map<String, Object> wsR(Map<String, Object> parameters) {
         final Transaction tt = startTransaction();
         // we select pairs of persons using (id, id+1) pairs
-        final StatementResult result = tt.run("MATCH (p1:Person), (p2:Person {id: p1.id+1})\n" +
+        final StatementResult result = tt.run("MATCH (p1:Person)\n" +
+                "WHERE p1.id >= 2*$firstPair-1 AND p1.id <= 2*$lastPair-1 AND p1.id % 2 = 1\n" +
+                "MATCH (p2:Person {id: p1.id+1})\n" +
                 "WHERE p1.value + p2.value <= 0\n"+
-                "RETURN p1.id AS p1id, p1.value AS p1value, p2.id AS p2id, p2.value AS p2value");
+                "RETURN p1.id AS p1id, p1.value AS p1value, p2.id AS p2id, p2.value AS p2value\n" +
+                "LIMIT 1",
+                ImmutableMap.of("firstPair", firstPair(parameters), "lastPair", lastPair(parameters)));
 
+        final Map<String, Object> results;
         if (result.hasNext()) {
             Record record = result.next();
-            return ImmutableMap.of(
-                    "p1id",    record.get("p1id"),
-                    "p1value", record.get("p1value"),
-                    "p2id",    record.get("p2id"),
-                    "p2value", record.get("p2value"));
+            results = ImmutableMap.of(
+                    "p1id",    record.get("p1id").asLong(),
+                    "p1value", record.get("p1value").asLong(),
+                    "p2id",    record.get("p2id").asLong(),
+                    "p2value", record.get("p2value").asLong());
         } else {
-            return ImmutableMap.of();
+            results = ImmutableMap.of();
         }
+        commitTransaction(tt);
+        return results;
     }
 
 }
@@ -0,0 +1,476 @@
+package checker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Direct serialization graph of a history (Adya): transactions are nodes, write-write, write-read and read-write
+// (anti-)dependencies are edges. Cycles are found with an iterative Tarjan SCC and classified as
+//   G0       cycle of write-write edges only
+//   G1c      cycle of write-write and write-read edges
+//   G-single cycle with exactly one read-write edge
+//   G2       cycle with read-write edges
+// The graph is stored in compressed sparse row arrays, so 10M+ transactions fit in a few GB of heap.
+// Transactions are numbered from 0 to transactionCount - 1.
+public class DependencyGraph {
+
+    public enum EdgeType {
+        WW("ww"), WR("wr"), RW("rw");
+
+        private final String label;
+
+        EdgeType(String label) {
+            this.label = label;
+        }
+
+        int mask() {
+            return 1 << ordinal();
+        }
+    }
+
+    public enum AnomalyType { G0, G1C, G_SINGLE, G2 }
+
+    // the version that exists before the first write of a key
+    public static final int INITIAL = -1;
+
+    private static final int WW = EdgeType.WW.mask();
+    private static final int WR = EdgeType.WR.mask();
+    private static final int RW = EdgeType.RW.mask();
+    private static final int ALL = WW | WR | RW;
+
+    // the G-single searches of a component give up and report G2 after visiting this many transactions in total
+    private static final long G_SINGLE_SEARCH_BUDGET = 10_000_000;
+
+    public static class Anomaly {
+
+        private final AnomalyType type;
+        private final int[] cycle;
+        private final EdgeType[] edges;
+
+        Anomaly(AnomalyType type, int[] cycle, EdgeType[] edges) {
+            this.type = type;
+            this.cycle = cycle;
+            this.edges = edges;
+        }
+
+        public AnomalyType getType() {
+            return type;
+        }
+
+        // the transactions of an example cycle, the edge i leads from cycle[i] to cycle[(i + 1) % length]
+        public int[] getCycle() {
+            return cycle;
+        }
+
+        public EdgeType[] getEdges() {
+            return edges;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(type.name().replace('_', '-').replace("G1C", "G1c")).append(": ");
+            for (int i = 0; i < cycle.length; i++) {
+                sb.append(cycle[i]).append(" -").append(edges[i].label).append("-> ");
+            }
+            return sb.append(cycle[0]).toString();
+        }
+
+    }
+
+    public static Builder builder(int transactionCount) {
+        return new Builder(transactionCount);
+    }
+
+    public static class Builder {
+
+        private final int transactionCount;
+        private final IntList edgeFrom = new IntList();
+        private final IntList edgeTo = new IntList();
+        private final IntList edgeType = new IntList();
+        // (key, writer) -> writer of the next version of the key
+        private final LongIntMap nextVersion = new LongIntMap();
+        private final IntList readKeys = new IntList();
+        private final IntList readWriters = new IntList();
+        private final IntList readers = new IntList();
+
+        private Builder(int transactionCount) {
+            this.transactionCount = transactionCount;
+        }
+
+        public Builder addEdge(int from, int to, EdgeType type) {
+            checkTransaction(from);
+            checkTransaction(to);
+            if (from != to) {
+                edgeFrom.add(from);
+                edgeTo.add(to);
+                edgeType.add(type.ordinal());
+            }
+            return this;
+        }
+
+        // the committed writers of a key in version order, adds the write-write edges between consecutive versions
+        public Builder addVersionOrder(int key, int... writers) {
+            int previous = INITIAL;
+            for (int writer : writers) {
+                if (previous != INITIAL) addEdge(previous, writer, EdgeType.WW);
+                nextVersion.put(pack(key, previous), writer);
+                previous = writer;
+            }
+            return this;
+        }
+
+        // the reader observed the version of the key written by the writer (or INITIAL),
+        // adds the write-read edge from the writer and the read-write edge to the writer of the next version
+        public Builder addRead(int reader, int key, int writer) {
+            checkTransaction(reader);
+            readers.add(reader);
+            readKeys.add(key);
+            readWriters.add(writer);
+            return this;
+        }
+
+        private void checkTransaction(int transaction) {
+            if (transaction < 0 || transaction >= transactionCount) {
+                throw new IllegalArgumentException("Transaction " + transaction + " out of range 0.." + (transactionCount - 1));
+            }
+        }
+
+        private static long pack(int key, int writer) {
+            return ((long) key << 32) | (writer + 1L);
+        }
+
+        public DependencyGraph build() {
+            // reads are resolved here, so that reads and version orders can be added in any order
+            for (int i = 0; i < readers.size(); i++) {
+                final int reader = readers.get(i);
+                final int writer = readWriters.get(i);
+                if (writer != INITIAL) addEdge(writer, reader, EdgeType.WR);
+                final int next = nextVersion.get(pack(readKeys.get(i), writer), INITIAL);
+                if (next != INITIAL) addEdge(reader, next, EdgeType.RW);
+            }
+
+            // counting sort of the edges by source
+            final int[] offsets = new int[transactionCount + 1];
+            for (int i = 0; i < edgeFrom.size(); i++) {
+                offsets[edgeFrom.get(i) + 1]++;
+            }
+            for (int v = 0; v < transactionCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            final int[] fill = Arrays.copyOf(offsets, transactionCount);
+            final int[] targets = new int[edgeFrom.size()];
+            final byte[] types = new byte[edgeFrom.size()];
+            for (int i = 0; i < edgeFrom.size(); i++) {
+                final int position = fill[edgeFrom.get(i)]++;
+                targets[position] = edgeTo.get(i);
+                types[position] = (byte) edgeType.get(i);
+            }
+            return new DependencyGraph(transactionCount, offsets, targets, types);
+        }
+
+    }
+
+    private final int transactionCount;
+    private final int[] offsets;
+    private final int[] targets;
+    private final byte[] types;
+
+    // search state, allocated once and reused by the searches: visits are marked with a stamp instead of clearing
+    private int[] parent;
+    private int[] visited;
+    private int[] queue;
+    private int stamp;
+    private int lastVisits;
+
+    private DependencyGraph(int transactionCount, int[] offsets, int[] targets, byte[] types) {
+        this.transactionCount = transactionCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.types = types;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    // one anomaly per strongly connected component of the graph, of the most severe type found in it
+    public List<Anomaly> findAnomalies() {
+        final List<Anomaly> anomalies = new ArrayList<>();
+        final int[] all = stronglyConnectedComponents(ALL);
+        final int[] allSizes = componentSizes(all);
+        if (!hasCycle(allSizes)) return anomalies;
+
+        final int[] ww = stronglyConnectedComponents(WW);
+        final int[] wwSizes = componentSizes(ww);
+        final int[] wwWr = stronglyConnectedComponents(WW | WR);
+        final int[] wwWrSizes = componentSizes(wwWr);
+
+        // the transactions of every cyclic component, grouped by component
+        final int[] start = new int[allSizes.length + 1];
+        for (int c = 0; c < allSizes.length; c++) {
+            start[c + 1] = start[c] + (allSizes[c] > 1 ? allSizes[c] : 0);
+        }
+        final int[] members = new int[start[allSizes.length]];
+        final int[] fill = Arrays.copyOf(start, allSizes.length);
+        for (int v = 0; v < transactionCount; v++) {
+            if (allSizes[all[v]] > 1) members[fill[all[v]]++] = v;
+        }
+
+        for (int c = 0; c < allSizes.length; c++) {
+            if (allSizes[c] <= 1) continue;
+            anomalies.add(classify(c, members, start[c], start[c + 1], all, ww, wwSizes, wwWr, wwWrSizes));
+        }
+        return anomalies;
+    }
+
+    private Anomaly classify(int c, int[] members, int from, int to, int[] all, int[] ww, int[] wwSizes, int[] wwWr, int[] wwWrSizes) {
+        for (int i = from; i < to; i++) {
+            final int v = members[i];
+            if (wwSizes[ww[v]] > 1) return cycle(AnomalyType.G0, v, WW, ww);
+        }
+        for (int i = from; i < to; i++) {
+            final int v = members[i];
+            if (wwWrSizes[wwWr[v]] > 1) return cycle(AnomalyType.G1C, v, WW | WR, wwWr);
+        }
+        // G-single: a read-write edge u -> v closed by a path of write-write and write-read edges from v back to u
+        long budget = G_SINGLE_SEARCH_BUDGET;
+        for (int i = from; i < to && budget > 0; i++) {
+            final int u = members[i];
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                if (types[e] != EdgeType.RW.ordinal() || all[targets[e]] != c) continue;
+                final int[] path = path(targets[e], u, WW | WR, all, (int) Math.min(budget, Integer.MAX_VALUE));
+                budget -= lastVisits;
+                if (path != null) {
+                    final int[] cycle = new int[path.length];
+                    cycle[0] = u;
+                    System.arraycopy(path, 0, cycle, 1, path.length - 1);
+                    return new Anomaly(AnomalyType.G_SINGLE, cycle, edgeTypes(cycle, EdgeType.RW, WW | WR));
+                }
+            }
+        }
+        return cycle(AnomalyType.G2, members[from], ALL, all);
+    }
+
+    private Anomaly cycle(AnomalyType type, int start, int mask, int[] components) {
+        // start lies on a cycle of its component, so a path from one of its successors leads back to it
+        for (int e = offsets[start]; e < offsets[start + 1]; e++) {
+            if ((mask & (1 << types[e])) == 0 || components[targets[e]] != components[start]) continue;
+            final int[] path = path(targets[e], start, mask, components, Integer.MAX_VALUE);
+            if (path == null) continue;
+            final int[] cycle = new int[path.length];
+            cycle[0] = start;
+            System.arraycopy(path, 0, cycle, 1, path.length - 1);
+            return new Anomaly(type, cycle, edgeTypes(cycle, null, mask));
+        }
+        throw new IllegalStateException("No cycle through " + start);
+    }
+
+    // the edge types along a cycle, preferring the given type for the first edge
+    private EdgeType[] edgeTypes(int[] cycle, EdgeType firstType, int mask) {
+        final EdgeType[] edges = new EdgeType[cycle.length];
+        for (int i = 0; i < cycle.length; i++) {
+            final int from = cycle[i];
+            final int to = cycle[(i + 1) % cycle.length];
+            final int edgeMask = i == 0 && firstType != null ? firstType.mask() : mask;
+            for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+                if (targets[e] == to && (edgeMask & (1 << types[e])) != 0) {
+                    edges[i] = EdgeType.values()[types[e]];
+                    break;
+                }
+            }
+        }
+        return edges;
+    }
+
+    // shortest path from -> to over the edges of the mask within the component of to, null if there is none
+    // or if the search visits more than limit transactions; path[0] == from, path[length - 1] == to
+    private int[] path(int from, int to, int mask, int[] components, int limit) {
+        if (parent == null) {
+            parent = new int[transactionCount];
+            visited = new int[transactionCount];
+            queue = new int[transactionCount];
+        }
+        final int mark = ++stamp;
+        final int component = components[to];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        visited[from] = mark;
+        parent[from] = -1;
+        while (head < tail && tail <= limit) {
+            final int v = queue[head++];
+            lastVisits = tail;
+            if (v == to) {
+                int length = 0;
+                for (int w = to; w != -1; w = parent[w]) length++;
+                final int[] path = new int[length];
+                for (int w = to, i = length - 1; w != -1; w = parent[w], i--) path[i] = w;
+                return path;
+            }
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                final int w = targets[e];
+                if ((mask & (1 << types[e])) == 0 || visited[w] == mark || components[w] != component) continue;
+                visited[w] = mark;
+                parent[w] = v;
+                queue[tail++] = w;
+            }
+        }
+        lastVisits = tail;
+        return null;
+    }
+
+    // iterative Tarjan: returns the component of every transaction, considering only the edges of the mask
+    int[] stronglyConnectedComponents(int mask) {
+        final int n = transactionCount;
+        final int[] index = new int[n];
+        final int[] lowLink = new int[n];
+        final int[] component = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        final int[] stack = new int[n];
+        final int[] callNode = new int[n];
+        final int[] callEdge = new int[n];
+        int stackSize = 0;
+        int nextIndex = 0;
+        int components = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) continue;
+            int depth = 0;
+            callNode[depth] = root;
+            callEdge[depth++] = offsets[root];
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+
+            while (depth > 0) {
+                final int v = callNode[depth - 1];
+                final int e = callEdge[depth - 1];
+                if (e < offsets[v + 1]) {
+                    callEdge[depth - 1]++;
+                    if ((mask & (1 << types[e])) == 0) continue;
+                    final int w = targets[e];
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        callNode[depth] = w;
+                        callEdge[depth++] = offsets[w];
+                    } else if (component[w] < 0) {
+                        // visited but not yet in a component means w is on the stack
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                } else {
+                    depth--;
+                    if (lowLink[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            component[w] = components;
+                        } while (w != v);
+                        components++;
+                    }
+                    if (depth > 0) {
+                        final int u = callNode[depth - 1];
+                        lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+                    }
+                }
+            }
+        }
+        return component;
+    }
+
+    private static int[] componentSizes(int[] components) {
+        int count = 0;
+        for (int c : components) count = Math.max(count, c + 1);
+        final int[] sizes = new int[count];
+        for (int c : components) sizes[c]++;
+        return sizes;
+    }
+
+    private static boolean hasCycle(int[] sizes) {
+        for (int size : sizes) {
+            if (size > 1) return true;
+        }
+        return false;
+    }
+
+    // growable int array, avoids boxing the edges and reads while the graph is built
+    static class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, values.length * 2);
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+    }
+
+    // open addressing hash map from long keys (other than -1) to int values
+    static class LongIntMap {
+
+        private static final long EMPTY = -1;
+
+        private long[] keys = newKeys(16);
+        private int[] values = new int[16];
+        private int size;
+
+        private static long[] newKeys(int capacity) {
+            final long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        void put(long key, int value) {
+            if (2 * (size + 1) > keys.length) resize();
+            int slot = slot(key, keys.length);
+            while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & (keys.length - 1);
+            if (keys[slot] == EMPTY) size++;
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        int get(long key, int defaultValue) {
+            int slot = slot(key, keys.length);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) return values[slot];
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return defaultValue;
+        }
+
+        private static int slot(long key, int capacity) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & (capacity - 1);
+        }
+
+        private void resize() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,157 @@
+package checker;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+// Verifies the version histories returned by g0check: restricted to the transactions that appear in all three
+// histories (p1, the knows edge, p2), the histories must be identical, otherwise two writers interleaved (G0).
+// Runs in linear time on primitive arrays, so histories of millions of transactions are checked in milliseconds.
+public class G0Checker {
+
+    public static class Result {
+
+        private final int commonLength;
+        private final int divergence;
+        private final String first;
+        private final String second;
+        private final long firstValue;
+        private final long secondValue;
+
+        private Result(int commonLength, int divergence, String first, String second, long firstValue, long secondValue) {
+            this.commonLength = commonLength;
+            this.divergence = divergence;
+            this.first = first;
+            this.second = second;
+            this.firstValue = firstValue;
+            this.secondValue = secondValue;
+        }
+
+        public boolean isConsistent() {
+            return divergence < 0;
+        }
+
+        // number of versions that the three histories have in common
+        public int getCommonLength() {
+            return commonLength;
+        }
+
+        // position in the common history where two histories first differ, -1 if they are consistent
+        public int getDivergence() {
+            return divergence;
+        }
+
+        @Override
+        public String toString() {
+            if (isConsistent()) {
+                return String.format("consistent, %d common versions", commonLength);
+            }
+            return String.format("%s and %s diverge at position %d of the common history: %s=%s, %s=%s",
+                    first, second, divergence, first, format(firstValue), second, format(secondValue));
+        }
+
+        private static String format(long value) {
+            return value == Long.MIN_VALUE ? "<end>" : Long.toString(value);
+        }
+
+    }
+
+    public static Result check(Map<String, Object> g0checkResults) {
+        return check(
+                toArray((List<?>) g0checkResults.get("p1VersionHistory")),
+                toArray((List<?>) g0checkResults.get("kVersionHistory")),
+                toArray((List<?>) g0checkResults.get("p2VersionHistory")));
+    }
+
+    public static Result check(long[] p1VersionHistory, long[] kVersionHistory, long[] p2VersionHistory) {
+        final Membership p1 = new Membership(p1VersionHistory);
+        final Membership k = new Membership(kVersionHistory);
+        final Membership p2 = new Membership(p2VersionHistory);
+
+        final long[] p1Common = retain(p1VersionHistory, k, p2);
+        final long[] kCommon  = retain(kVersionHistory, p1, p2);
+        final long[] p2Common = retain(p2VersionHistory, p1, k);
+
+        final Result kResult = compare("p1", p1Common, "k", kCommon);
+        if (!kResult.isConsistent()) return kResult;
+        return compare("p1", p1Common, "p2", p2Common);
+    }
+
+    public static long[] toArray(List<?> versionHistory) {
+        final long[] array = new long[versionHistory.size()];
+        int i = 0;
+        for (Object version : versionHistory) {
+            array[i++] = ((Number) version).longValue();
+        }
+        return array;
+    }
+
+    // the versions of the history that also occur in both other histories, in their original order
+    private static long[] retain(long[] history, Membership other1, Membership other2) {
+        final long[] retained = new long[history.length];
+        int n = 0;
+        for (long version : history) {
+            if (other1.contains(version) && other2.contains(version)) {
+                retained[n++] = version;
+            }
+        }
+        return Arrays.copyOf(retained, n);
+    }
+
+    private static Result compare(String firstName, long[] first, String secondName, long[] second) {
+        final int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            if (first[i] != second[i]) {
+                return new Result(length, i, firstName, secondName, first[i], second[i]);
+            }
+        }
+        if (first.length != second.length) {
+            return new Result(length, length, firstName, secondName,
+                    first.length > length ? first[length] : Long.MIN_VALUE,
+                    second.length > length ? second[length] : Long.MIN_VALUE);
+        }
+        return new Result(length, -1, firstName, secondName, 0, 0);
+    }
+
+    // set of the versions of a history: a bitset when the versions are transaction ids in a dense range,
+    // a sorted copy with binary search otherwise
+    private static class Membership {
+
+        private final long offset;
+        private final BitSet bits;
+        private final long[] sorted;
+
+        Membership(long[] history) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long version : history) {
+                min = Math.min(min, version);
+                max = Math.max(max, version);
+            }
+            if (history.length > 0 && max - min >= 0 && max - min < Math.min(Integer.MAX_VALUE, Math.max(1L << 20, 64L * history.length))) {
+                offset = min;
+                bits = new BitSet((int) (max - min + 1));
+                for (long version : history) {
+                    bits.set((int) (version - min));
+                }
+                sorted = null;
+            } else {
+                offset = 0;
+                bits = null;
+                sorted = history.clone();
+                Arrays.sort(sorted);
+            }
+        }
+
+        boolean contains(long version) {
+            if (bits != null) {
+                final long index = version - offset;
+                return index >= 0 && index <= Integer.MAX_VALUE && bits.get((int) index);
+            }
+            return Arrays.binarySearch(sorted, version) >= 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package checker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Checks the g1c transactions for circular information flow while they complete.
+// Every g1c transaction writes its own id and reads the id of the transaction it read from, so every transaction has
+// exactly one incoming write-read edge and a cycle is found by following the read-from chain of a transaction until it
+// returns to it. The last transaction of a cycle to complete closes it, so cycles are reported immediately.
+// The read-from table is a ring indexed by the transaction id: memory is constant, and cycles and reads of aborted
+// transactions are detected as long as they span fewer transaction ids than the capacity.
+public class G1cOnlineChecker {
+
+    private static final byte COMMITTED = 1;
+    private static final byte ABORTED = 2;
+
+    private static final int MAX_REPORTED = 100;
+
+    private final int mask;
+    private final long[] ids;
+    private final long[] readFrom;
+    private final byte[] states;
+    private final long[] path;
+    // readers whose writer had not completed when they did, usually only a few because of completion order races
+    private final long[] pendingReaders;
+    private final long[] pendingWriters;
+    private int pending;
+
+    private long committed;
+    private long aborted;
+    private long cycles;
+    private long abortedReads;
+    private final List<String> violations = new ArrayList<>();
+
+    // the capacity is rounded up to a power of two and should be well above the number of transactions in flight
+    public G1cOnlineChecker(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.ids = new long[size];
+        this.readFrom = new long[size];
+        this.states = new byte[size];
+        this.path = new long[size];
+        this.pendingReaders = new long[size];
+        this.pendingWriters = new long[size];
+    }
+
+    // transaction ids start from 1, readFrom is 0 for the initial version
+    public void committed(long transactionId, long readFrom) {
+        committed++;
+        final int slot = slot(transactionId);
+        ids[slot] = transactionId;
+        this.readFrom[slot] = readFrom;
+        states[slot] = COMMITTED;
+
+        if (readFrom != 0) {
+            final int writerSlot = slot(readFrom);
+            if (ids[writerSlot] != readFrom && readFrom > transactionId - mask) {
+                // the writer has not completed yet, its outcome is checked when it does
+                if (pending <= mask) {
+                    pendingReaders[pending] = transactionId;
+                    pendingWriters[pending++] = readFrom;
+                }
+            } else if (ids[writerSlot] == readFrom && states[writerSlot] == ABORTED) {
+                abortedRead(transactionId, readFrom);
+            }
+        }
+        resolvePending(transactionId, false);
+        checkCycle(transactionId);
+    }
+
+    public void aborted(long transactionId) {
+        aborted++;
+        final int slot = slot(transactionId);
+        ids[slot] = transactionId;
+        readFrom[slot] = 0;
+        states[slot] = ABORTED;
+        resolvePending(transactionId, true);
+    }
+
+    private int slot(long transactionId) {
+        return (int) (transactionId & mask);
+    }
+
+    private void checkCycle(long transactionId) {
+        int length = 0;
+        path[length++] = transactionId;
+        long current = readFrom[slot(transactionId)];
+        while (current != 0 && length <= mask) {
+            if (current == transactionId) {
+                cycles++;
+                final StringBuilder cycle = new StringBuilder("Circular information flow: ");
+                for (int i = length - 1; i >= 0; i--) {
+                    cycle.append(path[i]).append(" -wr-> ");
+                }
+                report(cycle.append(path[length - 1]).toString());
+                return;
+            }
+            final int slot = slot(current);
+            if (ids[slot] != current || states[slot] != COMMITTED) return;
+            path[length++] = current;
+            current = readFrom[slot];
+        }
+    }
+
+    // checks the readers that read from a transaction before it completed
+    private void resolvePending(long writer, boolean writerAborted) {
+        for (int i = pending - 1; i >= 0; i--) {
+            if (pendingWriters[i] != writer) continue;
+            if (writerAborted) abortedRead(pendingReaders[i], writer);
+            pending--;
+            pendingReaders[i] = pendingReaders[pending];
+            pendingWriters[i] = pendingWriters[pending];
+        }
+    }
+
+    private void abortedRead(long transactionId, long writer) {
+        abortedReads++;
+        report(String.format("Transaction %d read data by aborted transaction %d", transactionId, writer));
+    }
+
+    private void report(String violation) {
+        System.out.println(violation);
+        if (violations.size() < MAX_REPORTED) violations.add(violation);
+    }
+
+    // number of reads of transactions that have not completed yet, should be 0 once all transactions completed
+    public int getPending() {
+        return pending;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+
+    public long getAborted() {
+        return aborted;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getAbortedReads() {
+        return abortedReads;
+    }
+
+    // the first violations, at most 100
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    public boolean isConsistent() {
+        return cycles == 0 && abortedReads == 0;
+    }
+
+}
@@ -0,0 +1,128 @@
+package checker;
+
+import history.HistoryLog;
+import history.HistoryReader;
+import history.Operation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Checks a history log recorded with --history offline for dependency cycles.
+// The key events of the log (see history.Operation.Access) give the version each committed transaction installed and
+// read per key, and the version order of the keys that a check returned, e.g. the version histories of G0.
+// Consecutive versions give the write-write edges, reads the write-read edges from their writer and the read-write edges
+// to the writer of the next version. Without a returned order, the order of a key is only known if a single committed
+// transaction wrote it, otherwise its reads give the write-read edges only.
+// Reads of versions written by failed transactions are reported as well.
+public class HistoryChecker {
+
+    private static final int MULTIPLE = -2;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: HistoryChecker <history log>");
+            System.exit(2);
+        }
+        final HistoryChecker checker = new HistoryChecker();
+        final List<DependencyGraph.Anomaly> anomalies = checker.check(Paths.get(args[0]));
+        anomalies.forEach(System.out::println);
+        final boolean pass = anomalies.isEmpty() && checker.getReadsOfFailed() == 0;
+        System.out.printf("Result: %s\n", pass ? "PASS" : "FAIL");
+        System.exit(pass ? 0 : 1);
+    }
+
+    private long readsOfFailed;
+    private long keysWithoutVersionOrder;
+
+    // reads of versions written by transactions that failed, found by the last check
+    public long getReadsOfFailed() {
+        return readsOfFailed;
+    }
+
+    // keys written by several transactions without a returned version order, found by the last check
+    public long getKeysWithoutVersionOrder() {
+        return keysWithoutVersionOrder;
+    }
+
+    public List<DependencyGraph.Anomaly> check(Path file) throws IOException {
+        int maxTransactionId = 0;
+        try (HistoryReader reader = new HistoryReader(file)) {
+            while (reader.next()) {
+                if (reader.getType() == HistoryLog.WRITE || reader.getType() == HistoryLog.READ) {
+                    maxTransactionId = Math.max(maxTransactionId, Math.toIntExact(reader.getWritten()));
+                }
+            }
+        }
+
+        // the committed writers, the version orders returned by the checks (the last check of a key wins)
+        // and the writer of every key, MULTIPLE if there are several
+        final boolean[] committed = new boolean[maxTransactionId + 1];
+        final Map<Integer, DependencyGraph.IntList> versionOrders = new HashMap<>();
+        final Map<Integer, Integer> writers = new HashMap<>();
+        try (HistoryReader reader = new HistoryReader(file)) {
+            while (reader.next()) {
+                if (reader.getType() == HistoryLog.WRITE) {
+                    final int writer = (int) reader.getWritten();
+                    committed[writer] = true;
+                    writers.merge(Math.toIntExact(reader.getKey1()), writer, (a, b) -> a.equals(b) ? a : MULTIPLE);
+                } else if (reader.getType() == HistoryLog.VERSION) {
+                    final int key = Math.toIntExact(reader.getKey1());
+                    if (reader.getKey2() == 0) versionOrders.put(key, new DependencyGraph.IntList());
+                    final DependencyGraph.IntList versions = versionOrders.get(key);
+                    if (versions != null) versions.add(Math.toIntExact(reader.getWritten()));
+                }
+            }
+        }
+
+        final DependencyGraph.Builder graph = DependencyGraph.builder(maxTransactionId + 1);
+        readsOfFailed = 0;
+        keysWithoutVersionOrder = 0;
+        for (Map.Entry<Integer, DependencyGraph.IntList> entry : versionOrders.entrySet()) {
+            final DependencyGraph.IntList versions = entry.getValue();
+            final DependencyGraph.IntList order = new DependencyGraph.IntList();
+            for (int i = 0; i < versions.size(); i++) {
+                final int version = versions.get(i);
+                if (version <= 0) continue;
+                if (version > maxTransactionId || !committed[version]) {
+                    System.out.printf("Key %d has a version by failed transaction %d\n", entry.getKey(), version);
+                    readsOfFailed++;
+                    continue;
+                }
+                order.add(version);
+            }
+            graph.addVersionOrder(entry.getKey(), order.toArray());
+        }
+        for (Map.Entry<Integer, Integer> entry : writers.entrySet()) {
+            if (versionOrders.containsKey(entry.getKey())) continue;
+            if (entry.getValue() == MULTIPLE) {
+                keysWithoutVersionOrder++;
+            } else {
+                graph.addVersionOrder(entry.getKey(), entry.getValue());
+            }
+        }
+
+        try (HistoryReader reader = new HistoryReader(file)) {
+            while (reader.next()) {
+                if (reader.getType() != HistoryLog.READ) continue;
+                final long version = reader.getRead1();
+                if (version == Operation.NONE) continue;
+                if (version > 0 && (version > maxTransactionId || !committed[(int) version])) {
+                    System.out.printf("Transaction %d read data by failed transaction %d\n", reader.getWritten(), version);
+                    readsOfFailed++;
+                    continue;
+                }
+                graph.addRead((int) reader.getWritten(), Math.toIntExact(reader.getKey1()), version > 0 ? (int) version : DependencyGraph.INITIAL);
+            }
+        }
+
+        final DependencyGraph dependencyGraph = graph.build();
+        System.out.printf("History: %d transactions, %d edges, %d reads of failed transactions, %d keys without version order\n",
+                dependencyGraph.getTransactionCount() - 1, dependencyGraph.getEdgeCount(), readsOfFailed, keysWithoutVersionOrder);
+        return dependencyGraph.findAnomalies();
+    }
+
+}
@@ -0,0 +1,77 @@
+package checker;
+
+import com.google.common.collect.ImmutableMap;
+import driver.TestDriver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Checks the write skew invariant (the values of every person pair sum to more than 0) over millions of pairs.
+// Instead of one wsR transaction scanning every pair, the pairs are split into blocks that are checked by range scans
+// on a pool of threads, and the pairs that violate the invariant are merged in pair order.
+// Every block is checked in its own transaction, which is sound because the check runs after the writers completed.
+public class WriteSkewChecker {
+
+    private final int threads;
+    private final long blockSize;
+    private long elapsedNanos;
+
+    public WriteSkewChecker(int threads, long blockSize) {
+        if (threads < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("The thread count and the block size must be at least 1");
+        }
+        this.threads = threads;
+        this.blockSize = blockSize;
+    }
+
+    // -Dacid.wsCheckThreads (default: number of processors), -Dacid.wsCheckBlock (default: 10000 pairs)
+    public static WriteSkewChecker fromSystemProperties() {
+        return new WriteSkewChecker(
+                Integer.getInteger("acid.wsCheckThreads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("acid.wsCheckBlock", 10_000));
+    }
+
+    // returns the violating pairs (one per block at most, as wsR reports the first one it finds), empty if none
+    public List<Map<String, Object>> check(TestDriver<?, ?, ?> driver, long numPairs) throws InterruptedException {
+        final long start = System.nanoTime();
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Map<String, Object>>> blocks = new ArrayList<>();
+            for (long firstPair = 1; firstPair <= numPairs; firstPair += blockSize) {
+                final Map<String, Object> parameters = ImmutableMap.of(
+                        "firstPair", firstPair, "lastPair", Math.min(numPairs, firstPair + blockSize - 1));
+                blocks.add(executorService.submit(() -> driver.wsR(parameters)));
+            }
+
+            final List<Map<String, Object>> violations = new ArrayList<>();
+            for (Future<Map<String, Object>> block : blocks) {
+                final Map<String, Object> results = block.get();
+                if (!results.isEmpty()) {
+                    violations.add(results);
+                }
+            }
+            return violations;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    // duration of the last check
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d threads, blocks of %d pairs", threads, blockSize);
+    }
+
+}
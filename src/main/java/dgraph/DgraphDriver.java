@@ -8,10 +8,15 @@ import io.dgraph.DgraphClient;
 import io.dgraph.DgraphGrpc;
 import io.dgraph.DgraphProto;
 import io.dgraph.Transaction;
+import io.dgraph.TxnConflictException;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import transactions.AbortCause;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -46,6 +51,17 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
         tt.discard();
     }
 
+    @Override
+    protected AbortCause classifyException(Throwable t) {
+        if (t instanceof TxnConflictException) {
+            return AbortCause.WRITE_CONFLICT;
+        }
+        if (t instanceof StatusRuntimeException && ((StatusRuntimeException) t).getStatus().getCode() == Status.Code.DEADLINE_EXCEEDED) {
+            return AbortCause.TIMEOUT;
+        }
+        return super.classifyException(t);
+    }
+
     @Override
     public DgraphProto.Response runQuery(Transaction tt, String querySpecification, Map<String, String> queryParameters) {
         return null;
@@ -242,19 +258,23 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
     }
 
     @Override
-    public void g0Init() {
+    public void g0Init(long numPairs) {
         final Transaction txn = startTransaction();
 
         try {
             ArrayList<String> mutationQueries = new ArrayList<>();
 
-            mutationQueries.add("_:g1 <id> \"1\" .");
-            mutationQueries.add("_:g1 <dgraph.type> \"Person\" .");
-            mutationQueries.add("_:g1 <versionHistory> \"0\" .");
-            mutationQueries.add("_:g2 <id> \"2\" .");
-            mutationQueries.add("_:g2 <dgraph.type> \"Person\" .");
-            mutationQueries.add("_:g2 <versionHistory> \"0\" .");
-            mutationQueries.add("_:g1 <knows> _:g2 (versionHistory=\"0\") .");
+            for (long i = 1; i <= numPairs; i++) {
+                final String g1 = "_:g" + (2 * i - 1);
+                final String g2 = "_:g" + (2 * i);
+                mutationQueries.add(g1 + " <id> \"" + (2 * i - 1) + "\" .");
+                mutationQueries.add(g1 + " <dgraph.type> \"Person\" .");
+                mutationQueries.add(g1 + " <versionHistory> \"0\" .");
+                mutationQueries.add(g2 + " <id> \"" + (2 * i) + "\" .");
+                mutationQueries.add(g2 + " <dgraph.type> \"Person\" .");
+                mutationQueries.add(g2 + " <versionHistory> \"0\" .");
+                mutationQueries.add(g1 + " <knows> " + g2 + " (versionHistory=\"0\") .");
+            }
 
             String joinedQueries = String.join("\n", mutationQueries);
 
@@ -632,15 +652,17 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
     }
 
     @Override
-    public void impInit() {
+    public void impInit(long numPersons) {
         final Transaction txn = startTransaction();
 
         try {
             ArrayList<String> mutationQueries = new ArrayList<>();
 
-            mutationQueries.add("_:g1 <id> \"1\" .");
-            mutationQueries.add("_:g1 <dgraph.type> \"Person\" .");
-            mutationQueries.add("_:g1 <version> \"1\" .");
+            for (long i = 1; i <= numPersons; i++) {
+                mutationQueries.add("_:g" + i + " <id> \"" + i + "\" .");
+                mutationQueries.add("_:g" + i + " <dgraph.type> \"Person\" .");
+                mutationQueries.add("_:g" + i + " <version> \"1\" .");
+            }
 
             String joinedQueries = String.join("\n", mutationQueries);
 
@@ -1339,22 +1361,22 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
     }
 
     @Override
-    public void wsInit() {
-        final Transaction txn = startTransaction();
-
-        try {
-            // create 10 pairs of persons with indices (1,2), ..., (19,20)
-            for (int i = 1; i <= 10; i++) {
+    public void wsInit(long numPairs) {
+        // create pairs of persons with indices (1,2), ..., (2*numPairs-1,2*numPairs), loading blocks of pairs in parallel
+        forEachPairBlock(numPairs, 1_000, getParallelism(), (firstPair, lastPair) -> {
+            final Transaction txn = startTransaction();
 
+            try {
                 ArrayList<String> mutationQueries = new ArrayList<>();
-
-                mutationQueries.add("_:p" + (2 * i - 1) + " <dgraph.type> \"Person\" .");
-                mutationQueries.add("_:p" + (2 * i - 1) + " <id> \"$person1Id\" .".replace("$person1Id", String.valueOf(2 * i - 1)));
-                mutationQueries.add("_:p" + (2 * i - 1) + " <value> \"70\" .");
-
-                mutationQueries.add("_:p" + 2 * i + " <dgraph.type> \"Person\" .");
-                mutationQueries.add("_:p" + 2 * i + " <id> \"$person2Id\" .".replace("$person2Id", String.valueOf(2 * i)));
-                mutationQueries.add("_:p" + 2 * i + " <value> \"80\" .");
+                for (long i = firstPair; i <= lastPair; i++) {
+                    mutationQueries.add("_:p" + (2 * i - 1) + " <dgraph.type> \"Person\" .");
+                    mutationQueries.add("_:p" + (2 * i - 1) + " <id> \"$person1Id\" .".replace("$person1Id", String.valueOf(2 * i - 1)));
+                    mutationQueries.add("_:p" + (2 * i - 1) + " <value> \"70\" .");
+
+                    mutationQueries.add("_:p" + 2 * i + " <dgraph.type> \"Person\" .");
+                    mutationQueries.add("_:p" + 2 * i + " <id> \"$person2Id\" .".replace("$person2Id", String.valueOf(2 * i)));
+                    mutationQueries.add("_:p" + 2 * i + " <value> \"80\" .");
+                }
 
                 String joinedQueries = String.join("\n", mutationQueries);
 
@@ -1367,12 +1389,12 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
                         .setCommitNow(false)
                         .build();
                 txn.doRequest(request);
-            }
 
-            commitTransaction(txn);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+                commitTransaction(txn);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
     }
 
     @Override
@@ -1450,25 +1472,18 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
     public Map<String, Object> wsR(Map<String, Object> parameters) {
         final Transaction txn = startTransaction();
 
-        long p1id;
-        long p1value;
-        long p2id;
-        long p2value;
-
+        // the persons of the pairs firstPair..lastPair, paired up by id below
         String query = "{\n" +
                 "  \n" +
-                "  person1(func: type(Person)) {\n" +
-                "    p1Id as id\n" +
-                "    value\n" +
-                "    nextId as math(p1Id + 1)\n" +
-                "  }\n" +
-                "    \n" +
-                "  person2(func: eq(id, val(nextId))) @filter(type(Person)) {\n" +
+                "  person1(func: ge(id, $firstId)) @filter(le(id, $lastId) AND type(Person)) {\n" +
                 "    id\n" +
                 "    value\n" +
                 "  }\n" +
                 "}";
 
+        query = query.replace("$firstId", String.valueOf(2 * firstPair(parameters) - 1));
+        query = query.replace("$lastId", String.valueOf(2 * lastPair(parameters)));
+
         DgraphProto.Request request1 = DgraphProto.Request.newBuilder()
                 .setQuery(query)
                 .setCommitNow(false)
@@ -1479,25 +1494,19 @@ public class DgraphDriver extends TestDriver<Transaction, Map<String, String>, D
 
         commitTransaction(txn);
 
-        if (!peopleResponse.person1.isEmpty() &&
-                !peopleResponse.person2.isEmpty() &&
-                peopleResponse.person1.size() == peopleResponse.person2.size()) {
-
-            for (int i = 0; i < peopleResponse.person1.size(); i++) {
-                if (Integer.parseInt(peopleResponse.person1.get(i).value) +
-                        Integer.parseInt(peopleResponse.person2.get(i).value) <= 0) {
-
-                    p1id = Long.parseLong(peopleResponse.person1.get(i).id);
-                    p1value = Long.parseLong(peopleResponse.person1.get(i).value);
-                    p2id = Long.parseLong(peopleResponse.person2.get(i).id);
-                    p2value = Long.parseLong(peopleResponse.person2.get(i).value);
-
-                    return ImmutableMap.of(
-                            "p1id", p1id,
-                            "p1value", p1value,
-                            "p2id", p2id,
-                            "p2value", p2value);
-                }
+        final Map<Long, Long> values = new HashMap<>();
+        for (Person person : peopleResponse.person1) {
+            values.put(Long.parseLong(person.id), Long.parseLong(person.value));
+        }
+        for (Map.Entry<Long, Long> person1 : values.entrySet()) {
+            final long p1id = person1.getKey();
+            final Long p2value = values.get(p1id + 1);
+            if (p1id % 2 == 1 && p2value != null && person1.getValue() + p2value <= 0) {
+                return ImmutableMap.of(
+                        "p1id", p1id,
+                        "p1value", person1.getValue(),
+                        "p2id", p1id + 1,
+                        "p2value", p2value);
             }
         }
 
@@ -0,0 +1,18 @@
+package driver;
+
+// The isolation levels a driver can run its transactions at, see TestDriver.getSupportedIsolationLevels()
+public enum IsolationLevel {
+
+    READ_UNCOMMITTED, READ_COMMITTED, REPEATABLE_READ, SERIALIZABLE;
+
+    public static IsolationLevel parse(String level) {
+        return valueOf(level.trim().toUpperCase().replace('-', '_').replace(' ', '_'));
+    }
+
+    // -Dacid.isolation=read_committed|repeatable_read|serializable|..., the default if it is not set
+    public static IsolationLevel fromSystemProperties(IsolationLevel defaultLevel) {
+        final String level = System.getProperty("acid.isolation");
+        return level == null ? defaultLevel : parse(level);
+    }
+
+}
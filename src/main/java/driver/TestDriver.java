@@ -1,6 +1,18 @@
 package driver;
 
+import transactions.AbortCause;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 public abstract class TestDriver<TestTransaction, QueryParameters, QueryResult> implements AutoCloseable {
 
@@ -20,6 +32,44 @@ public abstract class TestDriver<TestTransaction, QueryParameters, QueryResult>
         }
     }
 
+    // the isolation levels the transactions of the driver can be run at, empty if the level cannot be chosen
+    public List<IsolationLevel> getSupportedIsolationLevels() {
+        return Collections.emptyList();
+    }
+
+    // null if the level cannot be chosen
+    public IsolationLevel getIsolationLevel() {
+        return null;
+    }
+
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support choosing the isolation level");
+    }
+
+    // counters of the driver, e.g. of its connection pool, reported after a run
+    public Map<String, Object> getStatistics() {
+        return Collections.emptyMap();
+    }
+
+    // maps an exception thrown by a transaction to the reason it was aborted, looking at the whole cause chain
+    public AbortCause classifyAbort(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            final AbortCause abortCause = classifyException(t);
+            if (abortCause != null) {
+                return abortCause;
+            }
+        }
+        return AbortCause.OTHER;
+    }
+
+    // classifies a single exception of the cause chain, returns null if the exception is not specific to any cause
+    protected AbortCause classifyException(Throwable t) {
+        if (t instanceof TimeoutException || t instanceof SocketTimeoutException) {
+            return AbortCause.TIMEOUT;
+        }
+        return null;
+    }
+
     public abstract void nukeDatabase();
 
     // Atomicity tests
@@ -34,7 +84,12 @@ public abstract class TestDriver<TestTransaction, QueryParameters, QueryResult>
 
     // G0 Dirty Write
 
-    public abstract void g0Init();
+    public void g0Init() {
+        g0Init(1);
+    }
+
+    // creates the pairs of persons (2i-1, 2i) for i = 1..numPairs, each connected by a knows edge
+    public abstract void g0Init(long numPairs);
 
     public abstract Map<String, Object> g0(Map<String, Object> parameters);
 
@@ -64,7 +119,12 @@ public abstract class TestDriver<TestTransaction, QueryParameters, QueryResult>
 
     // IMP
 
-    public abstract void impInit();
+    public void impInit() {
+        impInit(1);
+    }
+
+    // creates the persons 1..numPersons with version 1
+    public abstract void impInit(long numPersons);
 
     public abstract Map<String, Object> impW(Map<String, Object> parameters);
 
@@ -104,11 +164,57 @@ public abstract class TestDriver<TestTransaction, QueryParameters, QueryResult>
 
     // WS
 
-    public abstract void wsInit();
+    public void wsInit() {
+        wsInit(10);
+    }
+
+    // creates the pairs of persons (2i-1, 2i) for i = 1..numPairs with values 70 and 80
+    public abstract void wsInit(long numPairs);
 
     public abstract Map<String, Object> wsW(Map<String, Object> parameters);
 
+    // returns a pair whose values sum to 0 or less (p1id, p1value, p2id, p2value), or an empty map if there is none.
+    // Only the pairs firstPair..lastPair are checked if these parameters are given, so that the check of millions of
+    // pairs can be split into blocks (see checker.WriteSkewChecker).
     public abstract Map<String, Object> wsR(Map<String, Object> parameters);
 
+    public static long firstPair(Map<String, Object> parameters) {
+        return parameters.containsKey("firstPair") ? (long) parameters.get("firstPair") : 1;
+    }
+
+    // the default is large enough for any pair count, but small enough that the person id 2 * lastPair does not overflow
+    public static long lastPair(Map<String, Object> parameters) {
+        return parameters.containsKey("lastPair") ? (long) parameters.get("lastPair") : 1L << 40;
+    }
+
+    // the number of connections the driver can use at once, e.g. for loading data in parallel
+    protected int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // runs action(firstPair, lastPair) on blocks of at most blockSize pairs covering the pairs 1..numPairs, in parallel
+    // on at most parallelism threads of its own (usually getParallelism()), as the actions block on the database
+    protected static void forEachPairBlock(long numPairs, long blockSize, int parallelism, BiConsumer<Long, Long> action) {
+        final long blocks = (numPairs + blockSize - 1) / blockSize;
+        final ExecutorService executorService = Executors.newFixedThreadPool((int) Math.max(1, Math.min(parallelism, blocks)));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (long block = 0; block < blocks; block++) {
+                final long firstPair = block * blockSize + 1;
+                final long lastPair = Math.min(numPairs, (block + 1) * blockSize);
+                futures.add(executorService.submit(() -> action.accept(firstPair, lastPair)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
 
 }
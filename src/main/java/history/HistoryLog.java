@@ -0,0 +1,113 @@
+package history;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Append-only log of fixed-size binary events in a memory-mapped file.
+// Appending reserves a slot with a single atomic increment and writes the fields with absolute puts into the mapping,
+// so recording does not allocate and does not lock. The file is mapped in segments as it grows.
+//
+// File layout, all values little endian:
+//   header (64 bytes): magic, format version, event size, event count (written on close)
+//   events (64 bytes each):
+//      0 byte  type (INVOKE, OK, FAIL, WRITE, READ, VERSION; 0 marks a slot that was never completed)
+//      1 byte  operation ordinal
+//      8 long  System.nanoTime()
+//     16 long  thread id
+//     24 long  key1,  32 long key2    (e.g. person ids)
+//     40 long  written value           (e.g. transaction id)
+//     48 long  read1, 56 long read2    (values read; the abort cause ordinal for FAIL)
+// An OK event is followed by the key events of the versions the transaction accessed (see Operation.Access):
+//   WRITE    key1 = key, written = transaction id, which is also the version it installed
+//   READ     key1 = key, written = transaction id, read1 = version read (the transaction id of its writer)
+//   VERSION  key1 = key, key2 = position in the version order of the key, written = version
+public class HistoryLog implements AutoCloseable {
+
+    public static final long MAGIC = 0x54534948_44494341L; // "ACIDHIST"
+    public static final int FORMAT_VERSION = 2;
+    public static final int EVENT_SIZE = 64;
+    public static final int HEADER_SIZE = 64;
+
+    public static final byte INVOKE = 1;
+    public static final byte OK = 2;
+    public static final byte FAIL = 3;
+    public static final byte WRITE = 4;
+    public static final byte READ = 5;
+    public static final byte VERSION = 6;
+
+    static final int SEGMENT_BITS = 26; // 64 MiB, one million events per segment
+    static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int MAX_SEGMENTS = 4096;
+
+    private final FileChannel channel;
+    private final AtomicReferenceArray<MappedByteBuffer> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final AtomicLong nextEvent = new AtomicLong();
+
+    public HistoryLog(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer header = segment(0);
+        header.putLong(0, MAGIC);
+        header.putInt(8, FORMAT_VERSION);
+        header.putInt(12, EVENT_SIZE);
+    }
+
+    public void append(byte type, Operation operation, long key1, long key2, long written, long read1, long read2) {
+        final long offset = HEADER_SIZE + nextEvent.getAndIncrement() * EVENT_SIZE;
+        final MappedByteBuffer segment = segment((int) (offset >>> SEGMENT_BITS));
+        final int position = (int) (offset & (SEGMENT_SIZE - 1));
+        segment.put(position + 1, (byte) operation.ordinal());
+        segment.putLong(position + 8, System.nanoTime());
+        segment.putLong(position + 16, Thread.currentThread().getId());
+        segment.putLong(position + 24, key1);
+        segment.putLong(position + 32, key2);
+        segment.putLong(position + 40, written);
+        segment.putLong(position + 48, read1);
+        segment.putLong(position + 56, read2);
+        // the type is written last, so a reader of a crashed run can tell completed slots from torn ones
+        segment.put(position, type);
+    }
+
+    public long getEventCount() {
+        return nextEvent.get();
+    }
+
+    private MappedByteBuffer segment(int index) {
+        final MappedByteBuffer segment = segments.get(index);
+        return segment != null ? segment : map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null) {
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, index * SEGMENT_SIZE, SEGMENT_SIZE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments.set(index, segment);
+        }
+        return segment;
+    }
+
+    // writes the event count, flushes the mappings and cuts the file to the events that were appended
+    @Override
+    public synchronized void close() throws IOException {
+        final long events = nextEvent.get();
+        segment(0).putLong(16, events);
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            final MappedByteBuffer segment = segments.get(i);
+            if (segment != null) segment.force();
+        }
+        channel.truncate(HEADER_SIZE + events * EVENT_SIZE);
+        channel.close();
+    }
+
+}
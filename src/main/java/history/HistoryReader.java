@@ -0,0 +1,111 @@
+package history;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads a HistoryLog file event by event. The reader is a cursor: next() moves to the next event and the getters
+// return the fields of the current event, so that scanning millions of events does not allocate.
+// Slots that were reserved but never completed, e.g. by a crashed run, are skipped.
+public class HistoryReader implements AutoCloseable {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final FileChannel channel;
+    private final long eventCount;
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private long event = -1;
+    private int position;
+
+    public HistoryReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        final long size = channel.size();
+        moveTo(0);
+        if (size < HistoryLog.HEADER_SIZE || segment.getLong(0) != HistoryLog.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a history log");
+        }
+        // version 1 logs have the same layout, but no key events
+        if (segment.getInt(8) > HistoryLog.FORMAT_VERSION || segment.getInt(12) != HistoryLog.EVENT_SIZE) {
+            channel.close();
+            throw new IOException(file + " has an unsupported format version " + segment.getInt(8));
+        }
+        final long closedCount = segment.getLong(16);
+        this.eventCount = closedCount > 0 ? closedCount : (size - HistoryLog.HEADER_SIZE) / HistoryLog.EVENT_SIZE;
+    }
+
+    // number of event slots in the file, including the torn ones of a crashed run
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public boolean next() throws IOException {
+        while (++event < eventCount) {
+            moveTo(HistoryLog.HEADER_SIZE + event * HistoryLog.EVENT_SIZE);
+            if (segment.get(position) != 0) return true;
+        }
+        return false;
+    }
+
+    private void moveTo(long offset) throws IOException {
+        final int index = (int) (offset >>> HistoryLog.SEGMENT_BITS);
+        if (index != segmentIndex) {
+            final long start = index * HistoryLog.SEGMENT_SIZE;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(HistoryLog.SEGMENT_SIZE, channel.size() - start));
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segmentIndex = index;
+        }
+        position = (int) (offset & (HistoryLog.SEGMENT_SIZE - 1));
+    }
+
+    // position of the current event in the log, i.e. the order in which the events were appended
+    public long getIndex() {
+        return event;
+    }
+
+    public byte getType() {
+        return segment.get(position);
+    }
+
+    public Operation getOperation() {
+        return OPERATIONS[segment.get(position + 1)];
+    }
+
+    public long getNanoTime() {
+        return segment.getLong(position + 8);
+    }
+
+    public long getThreadId() {
+        return segment.getLong(position + 16);
+    }
+
+    public long getKey1() {
+        return segment.getLong(position + 24);
+    }
+
+    public long getKey2() {
+        return segment.getLong(position + 32);
+    }
+
+    public long getWritten() {
+        return segment.getLong(position + 40);
+    }
+
+    public long getRead1() {
+        return segment.getLong(position + 48);
+    }
+
+    public long getRead2() {
+        return segment.getLong(position + 56);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,167 @@
+package history;
+
+import java.util.List;
+import java.util.Map;
+
+// The driver operations that are recorded in the history, with the parameters and results that go into the
+// fixed slots of an event. A field is given as "name" or "name:reduce", where lists are reduced by min, max or size.
+// Operations that store their transaction id as the version of a key also list their accesses to these versions,
+// which are recorded as key events and give the dependency graph of the history (see checker.HistoryChecker).
+// The other operations store counters or values that do not identify their writer, so they have no key events.
+public enum Operation {
+
+    ATOMICITY_C("person1Id", "person2Id", "since", null, null),
+    ATOMICITY_RB("person1Id", "person2Id", "since", null, null),
+    ATOMICITY_CHECK(null, null, null, "numPersons", "numEmails"),
+    G0("person1Id", "person2Id", "transactionId", null, null,
+            Access.write("person1Id"), Access.write("person2Id")),
+    G0_CHECK("person1Id", "person2Id", null, "p1VersionHistory:size", "p2VersionHistory:size",
+            Access.versionOrder("person1Id", "p1VersionHistory"), Access.versionOrder("person2Id", "p2VersionHistory")),
+    G1A_W("personId", null, null, null, null),
+    G1A_R("personId", null, null, "pVersion", null),
+    G1B_W("personId", null, "odd", null, null),
+    G1B_R("personId", null, null, "pVersion", null),
+    G1C("person1Id", "person2Id", "transactionId", "person2Version", null,
+            Access.write("person1Id"), Access.read("person2Id", "person2Version")),
+    IMP_W("personId", null, null, null, null),
+    IMP_R("personId", null, null, "firstRead", "secondRead"),
+    PMP_W("personId", "postId", null, null, null),
+    PMP_R("personId", "postId", null, "firstRead", "secondRead"),
+    OTV_W(null, null, "cycleSize", null, null),
+    // the OTV check compares the newest version of the first read with the oldest version of the second read
+    OTV_R("personId", null, null, "firstRead:max", "secondRead:min"),
+    FR_W("personId", null, null, null, null),
+    FR_R("personId", null, null, "firstRead", "secondRead"),
+    LU_W("person1Id", "person2Id", null, null, null),
+    LU_R("personId", null, null, "numFriendsProp", "numKnowsEdges"),
+    WS_W("person1Id", "person2Id", null, null, null),
+    WS_R("firstPair", "lastPair", null, "p1id", "p2id");
+
+    // value of a slot whose parameter or result is absent
+    public static final long NONE = Long.MIN_VALUE;
+
+    private enum Reduce { VALUE, MIN, MAX, SIZE }
+
+    // an access of an operation to the version of a key, recorded as a key event of the given type after its OK event
+    public static final class Access {
+
+        private final byte type;
+        private final String key;
+        private final String version;
+
+        private Access(byte type, String key, String version) {
+            this.type = type;
+            this.key = key;
+            this.version = version;
+        }
+
+        // the operation installs its transaction id as the new version of the key parameter
+        static Access write(String key) {
+            return new Access(HistoryLog.WRITE, key, null);
+        }
+
+        // the operation reads the version of the key parameter, returned as the version result
+        static Access read(String key, String version) {
+            return new Access(HistoryLog.READ, key, version);
+        }
+
+        // the operation returns the versions of the key parameter in their order as the list result
+        static Access versionOrder(String key, String versions) {
+            return new Access(HistoryLog.VERSION, key, versions);
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public long key(Map<String, Object> parameters) {
+            return value(parameters, key, Reduce.VALUE);
+        }
+
+        public long version(Map<String, Object> results) {
+            return value(results, version, Reduce.VALUE);
+        }
+
+        // the version order of a VERSION access, null if it was not returned
+        public List<?> versions(Map<String, Object> results) {
+            final Object versions = results == null ? null : results.get(version);
+            return versions instanceof List ? (List<?>) versions : null;
+        }
+
+    }
+
+    private final String key1;
+    private final String key2;
+    private final String written;
+    private final String read1;
+    private final Reduce read1Reduce;
+    private final String read2;
+    private final Reduce read2Reduce;
+    private final Access[] accesses;
+
+    Operation(String key1, String key2, String written, String read1, String read2, Access... accesses) {
+        this.key1 = key1;
+        this.key2 = key2;
+        this.written = written;
+        this.read1 = name(read1);
+        this.read1Reduce = reduce(read1);
+        this.read2 = name(read2);
+        this.read2Reduce = reduce(read2);
+        this.accesses = accesses;
+    }
+
+    private static String name(String field) {
+        return field == null ? null : field.split(":")[0];
+    }
+
+    private static Reduce reduce(String field) {
+        return field == null || !field.contains(":") ? Reduce.VALUE : Reduce.valueOf(field.split(":")[1].toUpperCase());
+    }
+
+    public long key1(Map<String, Object> parameters) {
+        return value(parameters, key1, Reduce.VALUE);
+    }
+
+    public long key2(Map<String, Object> parameters) {
+        return value(parameters, key2, Reduce.VALUE);
+    }
+
+    public long written(Map<String, Object> parameters) {
+        return value(parameters, written, Reduce.VALUE);
+    }
+
+    public long read1(Map<String, Object> results) {
+        return value(results, read1, read1Reduce);
+    }
+
+    public long read2(Map<String, Object> results) {
+        return value(results, read2, read2Reduce);
+    }
+
+    // the accesses are recorded for every OK event, so the shared array is returned instead of a copy
+    public Access[] getAccesses() {
+        return accesses;
+    }
+
+    // does not allocate for the Number, Boolean and List values returned by the drivers
+    private static long value(Map<String, Object> map, String name, Reduce reduce) {
+        if (name == null || map == null) return NONE;
+        final Object value = map.get(name);
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof Boolean) return (Boolean) value ? 1 : 0;
+        if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            if (reduce == Reduce.SIZE) return list.size();
+            long result = NONE;
+            for (int i = 0; i < list.size(); i++) {
+                final Object element = list.get(i);
+                if (!(element instanceof Number)) continue;
+                final long v = ((Number) element).longValue();
+                if (result == NONE || (reduce == Reduce.MIN ? v < result : v > result)) result = v;
+            }
+            return result;
+        }
+        return NONE;
+    }
+
+}
@@ -0,0 +1,507 @@
+package history;
+
+import driver.IsolationLevel;
+import driver.TestDriver;
+import transactions.AbortCause;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+// Wraps a driver and appends an invoke event before and an ok or fail event after every transaction to a HistoryLog,
+// so that the history of a run can be analyzed offline instead of only its final aggregates. An ok event is followed
+// by the key events of the versions the transaction wrote and read, see Operation.Access.
+// Initialization is not recorded. Every transaction method is written out instead of taking a lambda,
+// so that recording does not allocate.
+public class RecordingTestDriver<TestTransaction, QueryParameters, QueryResult> extends TestDriver<TestTransaction, QueryParameters, QueryResult> {
+
+    private final TestDriver<TestTransaction, QueryParameters, QueryResult> delegate;
+    private final HistoryLog log;
+
+    public RecordingTestDriver(TestDriver<TestTransaction, QueryParameters, QueryResult> delegate, Path file) throws IOException {
+        this.delegate = delegate;
+        this.log = new HistoryLog(file);
+    }
+
+    public static <TT, QP, QR> RecordingTestDriver<TT, QP, QR> wrap(TestDriver<TT, QP, QR> delegate, Path file) throws IOException {
+        return new RecordingTestDriver<>(delegate, file);
+    }
+
+    public HistoryLog getLog() {
+        return log;
+    }
+
+    private void invoke(Operation operation, Map<String, Object> parameters) {
+        log.append(HistoryLog.INVOKE, operation, operation.key1(parameters), operation.key2(parameters), operation.written(parameters),
+                Operation.NONE, Operation.NONE);
+    }
+
+    private void ok(Operation operation, Map<String, Object> parameters, Map<String, Object> results) {
+        final long transactionId = operation.written(parameters);
+        log.append(HistoryLog.OK, operation, operation.key1(parameters), operation.key2(parameters), transactionId,
+                operation.read1(results), operation.read2(results));
+        for (Operation.Access access : operation.getAccesses()) {
+            final long key = access.key(parameters);
+            if (access.getType() == HistoryLog.VERSION) {
+                final List<?> versions = access.versions(results);
+                if (versions == null) continue;
+                for (int i = 0; i < versions.size(); i++) {
+                    final Object version = versions.get(i);
+                    if (version instanceof Number) {
+                        log.append(HistoryLog.VERSION, operation, key, i, ((Number) version).longValue(), Operation.NONE, Operation.NONE);
+                    }
+                }
+            } else {
+                log.append(access.getType(), operation, key, Operation.NONE, transactionId,
+                        access.getType() == HistoryLog.READ ? access.version(results) : Operation.NONE, Operation.NONE);
+            }
+        }
+    }
+
+    private void fail(Operation operation, Map<String, Object> parameters, Throwable t) {
+        log.append(HistoryLog.FAIL, operation, operation.key1(parameters), operation.key2(parameters), operation.written(parameters),
+                delegate.classifyAbort(t).ordinal(), Operation.NONE);
+    }
+
+    @Override
+    public List<IsolationLevel> getSupportedIsolationLevels() {
+        return delegate.getSupportedIsolationLevels();
+    }
+
+    @Override
+    public IsolationLevel getIsolationLevel() {
+        return delegate.getIsolationLevel();
+    }
+
+    @Override
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        delegate.setIsolationLevel(isolationLevel);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    @Override
+    public TestTransaction startTransaction() throws Exception {
+        return delegate.startTransaction();
+    }
+
+    @Override
+    public void commitTransaction(TestTransaction tt) throws Exception {
+        delegate.commitTransaction(tt);
+    }
+
+    @Override
+    public void abortTransaction(TestTransaction tt) throws Exception {
+        delegate.abortTransaction(tt);
+    }
+
+    @Override
+    public QueryResult runQuery(TestTransaction tt, String querySpecification, QueryParameters queryParameters) throws Exception {
+        return delegate.runQuery(tt, querySpecification, queryParameters);
+    }
+
+    @Override
+    public AbortCause classifyAbort(Throwable throwable) {
+        return delegate.classifyAbort(throwable);
+    }
+
+    @Override
+    public void nukeDatabase() {
+        delegate.nukeDatabase();
+    }
+
+    // Atomicity tests
+
+    @Override
+    public void atomicityInit() {
+        delegate.atomicityInit();
+    }
+
+    @Override
+    public void atomicityC(Map<String, Object> parameters) {
+        invoke(Operation.ATOMICITY_C, parameters);
+        try {
+            delegate.atomicityC(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.ATOMICITY_C, parameters, e);
+            throw e;
+        }
+        ok(Operation.ATOMICITY_C, parameters, null);
+    }
+
+    @Override
+    public void atomicityRB(Map<String, Object> parameters) {
+        invoke(Operation.ATOMICITY_RB, parameters);
+        try {
+            delegate.atomicityRB(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.ATOMICITY_RB, parameters, e);
+            throw e;
+        }
+        ok(Operation.ATOMICITY_RB, parameters, null);
+    }
+
+    @Override
+    public Map<String, Object> atomicityCheck() {
+        invoke(Operation.ATOMICITY_CHECK, null);
+        final Map<String, Object> results;
+        try {
+            results = delegate.atomicityCheck();
+        } catch (RuntimeException | Error e) {
+            fail(Operation.ATOMICITY_CHECK, null, e);
+            throw e;
+        }
+        ok(Operation.ATOMICITY_CHECK, null, results);
+        return results;
+    }
+
+    // G0 Dirty Write
+
+    @Override
+    public void g0Init(long numPairs) {
+        delegate.g0Init(numPairs);
+    }
+
+    @Override
+    public Map<String, Object> g0(Map<String, Object> parameters) {
+        invoke(Operation.G0, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g0(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G0, parameters, e);
+            throw e;
+        }
+        ok(Operation.G0, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> g0check(Map<String, Object> parameters) {
+        invoke(Operation.G0_CHECK, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g0check(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G0_CHECK, parameters, e);
+            throw e;
+        }
+        ok(Operation.G0_CHECK, parameters, results);
+        return results;
+    }
+
+    // G1a Intermediate Reads
+
+    @Override
+    public void g1aInit() {
+        delegate.g1aInit();
+    }
+
+    @Override
+    public Map<String, Object> g1aW(Map<String, Object> parameters) {
+        invoke(Operation.G1A_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g1aW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G1A_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.G1A_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> g1aR(Map<String, Object> parameters) {
+        invoke(Operation.G1A_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g1aR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G1A_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.G1A_R, parameters, results);
+        return results;
+    }
+
+    // G1b Intermediate Reads
+
+    @Override
+    public void g1bInit() {
+        delegate.g1bInit();
+    }
+
+    @Override
+    public Map<String, Object> g1bW(Map<String, Object> parameters) {
+        invoke(Operation.G1B_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g1bW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G1B_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.G1B_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> g1bR(Map<String, Object> parameters) {
+        invoke(Operation.G1B_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g1bR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G1B_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.G1B_R, parameters, results);
+        return results;
+    }
+
+    // G1c Circular Information Flow
+
+    @Override
+    public void g1cInit() {
+        delegate.g1cInit();
+    }
+
+    @Override
+    public Map<String, Object> g1c(Map<String, Object> parameters) {
+        invoke(Operation.G1C, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.g1c(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.G1C, parameters, e);
+            throw e;
+        }
+        ok(Operation.G1C, parameters, results);
+        return results;
+    }
+
+    // IMP
+
+    @Override
+    public void impInit(long numPersons) {
+        delegate.impInit(numPersons);
+    }
+
+    @Override
+    public Map<String, Object> impW(Map<String, Object> parameters) {
+        invoke(Operation.IMP_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.impW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.IMP_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.IMP_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> impR(Map<String, Object> parameters) {
+        invoke(Operation.IMP_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.impR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.IMP_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.IMP_R, parameters, results);
+        return results;
+    }
+
+    // PMP
+
+    @Override
+    public void pmpInit() {
+        delegate.pmpInit();
+    }
+
+    @Override
+    public Map<String, Object> pmpW(Map<String, Object> parameters) {
+        invoke(Operation.PMP_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.pmpW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.PMP_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.PMP_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> pmpR(Map<String, Object> parameters) {
+        invoke(Operation.PMP_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.pmpR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.PMP_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.PMP_R, parameters, results);
+        return results;
+    }
+
+    // OTV
+
+    @Override
+    public void otvInit() {
+        delegate.otvInit();
+    }
+
+    @Override
+    public Map<String, Object> otvW(Map<String, Object> parameters) {
+        invoke(Operation.OTV_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.otvW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.OTV_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.OTV_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> otvR(Map<String, Object> parameters) {
+        invoke(Operation.OTV_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.otvR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.OTV_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.OTV_R, parameters, results);
+        return results;
+    }
+
+    // FR
+
+    @Override
+    public void frInit() {
+        delegate.frInit();
+    }
+
+    @Override
+    public Map<String, Object> frW(Map<String, Object> parameters) {
+        invoke(Operation.FR_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.frW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.FR_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.FR_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> frR(Map<String, Object> parameters) {
+        invoke(Operation.FR_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.frR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.FR_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.FR_R, parameters, results);
+        return results;
+    }
+
+    // LU
+
+    @Override
+    public void luInit() {
+        delegate.luInit();
+    }
+
+    @Override
+    public Map<String, Object> luW(Map<String, Object> parameters) {
+        invoke(Operation.LU_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.luW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.LU_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.LU_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> luR(Map<String, Object> parameters) {
+        invoke(Operation.LU_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.luR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.LU_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.LU_R, parameters, results);
+        return results;
+    }
+
+    // WS
+
+    @Override
+    public void wsInit(long numPairs) {
+        delegate.wsInit(numPairs);
+    }
+
+    @Override
+    public Map<String, Object> wsW(Map<String, Object> parameters) {
+        invoke(Operation.WS_W, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.wsW(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.WS_W, parameters, e);
+            throw e;
+        }
+        ok(Operation.WS_W, parameters, results);
+        return results;
+    }
+
+    @Override
+    public Map<String, Object> wsR(Map<String, Object> parameters) {
+        invoke(Operation.WS_R, parameters);
+        final Map<String, Object> results;
+        try {
+            results = delegate.wsR(parameters);
+        } catch (RuntimeException | Error e) {
+            fail(Operation.WS_R, parameters, e);
+            throw e;
+        }
+        ok(Operation.WS_R, parameters, results);
+        return results;
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            log.close();
+        } finally {
+            delegate.close();
+        }
+    }
+
+}
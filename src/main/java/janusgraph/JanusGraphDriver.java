@@ -1,14 +1,24 @@
 package janusgraph;
 
 import com.google.common.collect.ImmutableMap;
+import com.sleepycat.je.DeadlockException;
+import com.sleepycat.je.LockConflictException;
+import com.sleepycat.je.LockTimeoutException;
+import driver.IsolationLevel;
 import driver.TestDriver;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.janusgraph.core.JanusGraph;
 import org.janusgraph.core.JanusGraphFactory;
 import org.janusgraph.core.JanusGraphTransaction;
+import org.janusgraph.diskstorage.locking.PermanentLockingException;
+import org.janusgraph.diskstorage.locking.TemporaryLockingException;
+import transactions.AbortCause;
 
 import java.util.*;
 
@@ -17,8 +27,43 @@ import static org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__.outE;
 
 public class JanusGraphDriver extends TestDriver {
 
+    // the isolation levels of BerkeleyDB JE, the level is chosen when the graph is opened
+    public static final List<IsolationLevel> ISOLATION_LEVELS = Arrays.asList(IsolationLevel.values());
+
+    private static final String CONFIGURATION = "conf/janusgraph-berkeleydb.properties";
+    private static final String ISOLATION_LEVEL = "storage.berkeleyje.isolation-level";
+
     //private JanusGraph graph = JanusGraphFactory.open("conf/janusgraph-cassandra-es-server.properties");
-    private JanusGraph graph = JanusGraphFactory.open("conf/janusgraph-berkeleydb.properties");
+    private JanusGraph graph;
+    private IsolationLevel isolationLevel;
+
+    // -Dacid.isolation=<level> overrides the isolation level of the BerkeleyDB configuration
+    public JanusGraphDriver() {
+        this(IsolationLevel.fromSystemProperties(null));
+    }
+
+    public JanusGraphDriver(IsolationLevel isolationLevel) {
+        try {
+            final PropertiesConfiguration configuration = new PropertiesConfiguration(CONFIGURATION);
+            if (isolationLevel != null) {
+                configuration.setProperty(ISOLATION_LEVEL, isolationLevel.name());
+            }
+            this.isolationLevel = IsolationLevel.parse(configuration.getString(ISOLATION_LEVEL, "REPEATABLE_READ"));
+            this.graph = JanusGraphFactory.open(configuration);
+        } catch (ConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<IsolationLevel> getSupportedIsolationLevels() {
+        return ISOLATION_LEVELS;
+    }
+
+    @Override
+    public IsolationLevel getIsolationLevel() {
+        return isolationLevel;
+    }
 
 
     @Override
@@ -41,6 +86,17 @@ public class JanusGraphDriver extends TestDriver {
         transaction.rollback();
     }
 
+    @Override
+    protected AbortCause classifyException(Throwable t) {
+        if (t instanceof PermanentLockingException) return AbortCause.LOCK_CONFLICT;
+        if (t instanceof TemporaryLockingException) return AbortCause.LOCK_TIMEOUT;
+        // BerkeleyDB JE exceptions, wrapped into JanusGraph's backend exceptions
+        if (t instanceof DeadlockException) return AbortCause.DEADLOCK;
+        if (t instanceof LockTimeoutException) return AbortCause.LOCK_TIMEOUT;
+        if (t instanceof LockConflictException) return AbortCause.LOCK_CONFLICT;
+        return super.classifyException(t);
+    }
+
     @Override
     public void close()  {
         //graph.close();
@@ -153,18 +209,20 @@ public class JanusGraphDriver extends TestDriver {
     //****** G0 BLOCK ******//
 
     @Override
-    public void g0Init() {
+    public void g0Init(long numPairs) {
         JanusGraphTransaction transaction = startTransaction();
         GraphTraversalSource g = transaction.traversal();
         long[] version = {0L};
-        Vertex person1 = g.addV("Person").next();
-        person1.property("id",1L);
-        person1.property("versionHistory", Arrays.copyOf(version,1));
-        Vertex person2 = g.addV("Person").next();
-        person2.property("id",2L);
-        person2.property("versionHistory", Arrays.copyOf(version,1));
-        Edge kEdge = person1.addEdge("Knows",person2);
-        kEdge.property("versionHistory", Arrays.copyOf(version,1));
+        for (long i = 1; i <= numPairs; i++) {
+            Vertex person1 = g.addV("Person").next();
+            person1.property("id", 2 * i - 1);
+            person1.property("versionHistory", Arrays.copyOf(version,1));
+            Vertex person2 = g.addV("Person").next();
+            person2.property("id", 2 * i);
+            person2.property("versionHistory", Arrays.copyOf(version,1));
+            Edge kEdge = person1.addEdge("Knows",person2);
+            kEdge.property("versionHistory", Arrays.copyOf(version,1));
+        }
         commitTransaction(transaction);
     }
 
@@ -357,12 +415,14 @@ public class JanusGraphDriver extends TestDriver {
     //****** IMP BLOCK ******//
 
     @Override
-    public void impInit() {
+    public void impInit(long numPersons) {
         JanusGraphTransaction transaction = startTransaction();
         GraphTraversalSource g = transaction.traversal();
-        Vertex v = g.addV().next();
-        v.property("id",1L);
-        v.property("version",1L);
+        for (long i = 1; i <= numPersons; i++) {
+            Vertex v = g.addV().next();
+            v.property("id", i);
+            v.property("version",1L);
+        }
         commitTransaction(transaction);
     }
 
@@ -645,18 +705,21 @@ public class JanusGraphDriver extends TestDriver {
 
     //****** WS BLOCK ******//
     @Override
-    public void wsInit() {
-        JanusGraphTransaction transaction = startTransaction();
-        GraphTraversalSource g = transaction.traversal();
-        for(int i =1;i<21;i++) {
-            Vertex person = g.addV("Person").next();
-            person.property("id", i);
-            if(i%2==0)
-                person.property("value", 80);
-            else
-                person.property("value", 70);
-        }
-        commitTransaction(transaction);
+    public void wsInit(long numPairs) {
+        // loading blocks of pairs in parallel, one transaction per block
+        forEachPairBlock(numPairs, 10_000, getParallelism(), (firstPair, lastPair) -> {
+            JanusGraphTransaction transaction = startTransaction();
+            GraphTraversalSource g = transaction.traversal();
+            for (long i = 2 * firstPair - 1; i <= 2 * lastPair; i++) {
+                Vertex person = g.addV("Person").next();
+                person.property("id", i);
+                if(i%2==0)
+                    person.property("value", 80);
+                else
+                    person.property("value", 70);
+            }
+            commitTransaction(transaction);
+        });
     }
 
     @Override
@@ -693,28 +756,25 @@ public class JanusGraphDriver extends TestDriver {
     public Map<String, Object> wsR(Map parameters) {
         JanusGraphTransaction transaction = startTransaction();
         GraphTraversalSource g = transaction.traversal();
-        System.out.println("hello2");
-        if (g.V().hasLabel("Person").hasNext()) {
-                List<Vertex> vertices = g.V().hasLabel("person").next(20);
-                for(Vertex person1: vertices) {
-                    long personID = person1.value("id");
-                    System.out.println(personID);
-                    if (g.V().hasLabel("Person").property("id",personID+1).hasNext()) {
-                        System.out.println("hello");
-                        Vertex person2 = g.V().hasLabel("Person").property("id",personID+1).next();
-                        if ((int) person1.value("value")+(int) person2.value("value")<=0) {
-                            commitTransaction(transaction);
-                            return ImmutableMap.of("person1ID", personID, "person2ID", personID+1);
-                        }
-                    }
-                }
-                commitTransaction(transaction);
-                return ImmutableMap.of();
-        }
-        else
-            throw new IllegalStateException("WS TR Person Missing from Graph");
-
+        final long firstId = 2 * firstPair(parameters) - 1;
+        final long lastId = 2 * lastPair(parameters);
+        final Map<Long, Integer> values = new HashMap<>();
+        g.V().has("Person", "id", P.between(firstId, lastId + 1)).forEachRemaining(person ->
+                values.put(person.value("id"), person.value("value")));
+        commitTransaction(transaction);
 
+        for (Map.Entry<Long, Integer> person1 : values.entrySet()) {
+            final long person1Id = person1.getKey();
+            final Integer person2Value = values.get(person1Id + 1);
+            if (person1Id % 2 == 1 && person2Value != null && person1.getValue() + person2Value <= 0) {
+                return ImmutableMap.of(
+                        "p1id",    person1Id,
+                        "p1value", (long) person1.getValue(),
+                        "p2id",    person1Id + 1,
+                        "p2value", (long) person2Value);
+            }
+        }
+        return ImmutableMap.of();
     }
 
 
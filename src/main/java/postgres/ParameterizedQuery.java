@@ -0,0 +1,113 @@
+package postgres;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A query of PostgresQueries with its $name parameters turned into bind variables. A quoted parameter ('$name') is a
+// bind variable as well, its quotes are dropped. The same query text always gives the same SQL, so the statements
+// are found in the prepared statement cache of the connection and prepared on the server after the prepare threshold.
+public final class ParameterizedQuery {
+
+    private static final ConcurrentHashMap<String, ParameterizedQuery> CACHE = new ConcurrentHashMap<>();
+    // keyed by the identity of the arrays of PostgresQueries
+    private static final ConcurrentHashMap<String[], ParameterizedQuery> BATCH_CACHE = new ConcurrentHashMap<>();
+
+    private final String sql;
+    private final String[] names;
+
+    private ParameterizedQuery(String sql, String[] names) {
+        this.sql = sql;
+        this.names = names;
+    }
+
+    public static ParameterizedQuery of(String query) {
+        return CACHE.computeIfAbsent(query, ParameterizedQuery::parse);
+    }
+
+    // the commands as one multi-statement query, which the driver sends as a pipeline of extended-protocol messages
+    // followed by a single sync, i.e. in one round trip. The parameters are numbered across the statements.
+    public static ParameterizedQuery ofBatch(String[] commands) {
+        return BATCH_CACHE.computeIfAbsent(commands, c -> parse(String.join(";\n", c)));
+    }
+
+    static ParameterizedQuery parse(String query) {
+        final StringBuilder sql = new StringBuilder(query.length());
+        final List<String> names = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            final char c = query.charAt(i);
+            final boolean quoted = c == '\'' && i + 1 < query.length() && query.charAt(i + 1) == '$';
+            final int start = quoted ? i + 2 : i + 1;
+            // $$ and $tag$ start dollar-quoted strings
+            final boolean afterDollarOrName = i > 0 && (query.charAt(i - 1) == '$' || isNamePart(query.charAt(i - 1)));
+            if ((c == '$' && !afterDollarOrName || quoted) && start < query.length() && Character.isLetter(query.charAt(start))) {
+                int end = start;
+                while (end < query.length() && isNamePart(query.charAt(end))) {
+                    end++;
+                }
+                final char next = end < query.length() ? query.charAt(end) : ' ';
+                if (quoted ? next == '\'' : next != '$') {
+                    names.add(query.substring(start, end));
+                    sql.append('?');
+                    i = quoted ? end + 1 : end;
+                    continue;
+                }
+            }
+            sql.append(c);
+            i++;
+        }
+        return new ParameterizedQuery(sql.toString(), names.toArray(new String[0]));
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String[] getParameterNames() {
+        return names;
+    }
+
+    // the caller closes the statement, which returns it to the statement cache of the connection
+    public PreparedStatement prepare(Connection conn, Map<String, Object> parameters) throws SQLException {
+        final PreparedStatement st = conn.prepareStatement(sql);
+        try {
+            for (int i = 0; i < names.length; i++) {
+                final Object value = parameters == null ? null : parameters.get(names[i]);
+                if (value == null) {
+                    throw new SQLException(String.format("No value for parameter $%s of query: %s", names[i], sql));
+                }
+                bind(st, i + 1, value);
+            }
+        } catch (SQLException e) {
+            st.close();
+            throw e;
+        }
+        return st;
+    }
+
+    private static void bind(PreparedStatement st, int index, Object value) throws SQLException {
+        if (value instanceof Long) {
+            st.setLong(index, (Long) value);
+        } else if (value instanceof Integer) {
+            st.setInt(index, (Integer) value);
+        } else if (value instanceof Boolean) {
+            st.setBoolean(index, (Boolean) value);
+        } else if (value instanceof String) {
+            // untyped like a string literal, the server infers the type from the context
+            st.setObject(index, value, Types.OTHER);
+        } else {
+            st.setObject(index, value);
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package postgres;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// A bounded pool of physical connections, so that a transaction does not pay for a TCP handshake, authentication and
+// a backend fork. The connections handed out are the logical handles of the PooledConnections of the data source:
+// closing a handle rolls back any open transaction and returns the physical connection to the pool.
+// At most maxSize connections are open at once, getConnection() waits up to the acquire timeout for a free one.
+// The statements a transaction left open are closed with its connection, which returns them to the prepared statement
+// cache of the physical connection, so the next transactions on it reuse the statements prepared on the server.
+public class PostgresConnectionPool implements ConnectionEventListener, AutoCloseable {
+
+    // connections that were idle for longer are validated before they are handed out
+    private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final ConnectionPoolDataSource dataSource;
+    private final int maxSize;
+    private final long acquireTimeoutNanos;
+    private final Semaphore permits;
+    // most recently used first, so that the busy connections stay warm and the others can be validated lazily
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder totalAcquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    private static final class IdleConnection {
+        final PooledConnection connection;
+        final long since;
+
+        IdleConnection(PooledConnection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+
+    public PostgresConnectionPool(ConnectionPoolDataSource dataSource, int maxSize, long acquireTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The pool size must be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public Connection getConnection() throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                acquireTimeouts.increment();
+                throw new SQLTransientConnectionException(String.format(
+                        "No connection available within %d ms, all %d connections of the pool are in use",
+                        TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos), maxSize), "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", "08001", e);
+        }
+        final long waited = System.nanoTime() - start;
+        acquired.increment();
+        totalAcquireNanos.add(waited);
+        maxAcquireNanos.accumulate(waited);
+
+        try {
+            IdleConnection candidate;
+            while ((candidate = idle.pollFirst()) != null) {
+                // an error while opening the handle is handled here, the error event would release the permit again
+                candidate.connection.removeConnectionEventListener(this);
+                final Connection connection;
+                try {
+                    connection = candidate.connection.getConnection();
+                } catch (SQLException e) {
+                    // the physical connection broke while it was idle, e.g. the server closed it
+                    discard(candidate.connection);
+                    continue;
+                } catch (RuntimeException e) {
+                    discard(candidate.connection);
+                    throw e;
+                }
+                candidate.connection.addConnectionEventListener(this);
+                if (System.nanoTime() - candidate.since < VALIDATION_INTERVAL_NANOS || connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return closingStatements(connection);
+                }
+                discard(candidate.connection);
+            }
+            final PooledConnection pooledConnection = dataSource.getPooledConnection();
+            pooledConnection.addConnectionEventListener(this);
+            created.incrementAndGet();
+            return closingStatements(pooledConnection.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static Connection closingStatements(Connection connection) {
+        final List<Statement> statements = new ArrayList<>();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            if (method.getName().equals("close")) {
+                for (Statement statement : statements) {
+                    try {
+                        statement.close();
+                    } catch (SQLException e) {
+                        // closing the connection matters more
+                    }
+                }
+                statements.clear();
+            }
+            final Object result;
+            try {
+                result = method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                statements.add((Statement) result);
+            }
+            return result;
+        });
+    }
+
+    // a handle was closed, the physical connection can be reused
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        final PooledConnection connection = (PooledConnection) event.getSource();
+        if (closed) {
+            discard(connection);
+        } else {
+            idle.offerFirst(new IdleConnection(connection, System.nanoTime()));
+        }
+        permits.release();
+    }
+
+    // a fatal error occurred on the physical connection, it is not returned to the pool
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        discard((PooledConnection) event.getSource());
+        permits.release();
+    }
+
+    private void discard(PooledConnection connection) {
+        // closing the physical connection would close the handle too, which must not return it to the pool
+        connection.removeConnectionEventListener(this);
+        discarded.incrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // the connection is already broken
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Map<String, Object> getStatistics() {
+        final long acquires = acquired.sum();
+        final Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("poolSize", maxSize);
+        statistics.put("connectionsCreated", created.get());
+        statistics.put("connectionsDiscarded", discarded.get());
+        statistics.put("acquires", acquires);
+        statistics.put("acquireTimeouts", acquireTimeouts.sum());
+        statistics.put("meanAcquireMillis", acquires == 0 ? 0.0 : totalAcquireNanos.sum() / 1e6 / acquires);
+        statistics.put("maxAcquireMillis", maxAcquireNanos.get() / 1e6);
+        return statistics;
+    }
+
+    // closes the idle connections, the ones in use are closed when they are returned
+    @Override
+    public void close() {
+        closed = true;
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection.connection);
+        }
+    }
+
+}
@@ -1,73 +1,278 @@
 package postgres;
 
 import com.google.common.collect.ImmutableMap;
+import driver.IsolationLevel;
 import driver.TestDriver;
+import transactions.LatencyHistogram;
 import org.postgresql.ds.PGConnectionPoolDataSource;
+import org.postgresql.ds.PGSimpleDataSource;
+import transactions.AbortCause;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 public class PostgresDriver extends TestDriver<Connection, Map<String, Object>, ResultSet> {
 
+    // read uncommitted behaves like read committed in Postgres
+    public static final List<IsolationLevel> ISOLATION_LEVELS =
+            Arrays.asList(IsolationLevel.READ_COMMITTED, IsolationLevel.REPEATABLE_READ, IsolationLevel.SERIALIZABLE);
+
     protected PGConnectionPoolDataSource ds;
+    // null if every transaction opens its own physical connection
+    protected PostgresConnectionPool pool;
+    protected IsolationLevel isolationLevel = IsolationLevel.READ_COMMITTED;
+
+    public enum SchemaProfile { PLAIN, INDEXED }
+
+    protected SchemaProfile schemaProfile = SchemaProfile.PLAIN;
+    protected long backgroundPersons;
+    protected long backgroundDegree = 10;
+
+    // how nukeDatabase() resets the database between the tests: DROP drops the tables, TRUNCATE empties them and keeps
+    // their indexes, TEMPLATE copies a fresh database from a template database holding the schema and background data.
+    // All of them restart the id sequence.
+    public enum ResetMode { DROP, TRUNCATE, TEMPLATE }
+
+    protected ResetMode resetMode = ResetMode.DROP;
+    protected String databaseName;
+    protected int poolSize;
+    protected long acquireTimeoutMillis;
+    // the background data is already in the tables, e.g. they were copied from the template
+    protected boolean backgroundLoaded;
+
+    // ROUND_TRIP sends the statements of an operation one by one, FUNCTION calls the PL/pgSQL function of the operation
+    // (see PostgresQueries.functionsCreate) in one round trip
+    public enum ExecutionMode { ROUND_TRIP, FUNCTION }
+
+    protected ExecutionMode executionMode = ExecutionMode.ROUND_TRIP;
+
+    // durability settings of the server, applied with ALTER SYSTEM and a reload of the configuration (see
+    // applyServerProfile()), so they need a superuser; the settings of every profile override those of the others
+    public enum ServerProfile {
+        // every commit waits for the flush of its WAL
+        STRICT(ImmutableMap.of("synchronous_commit", "on", "commit_delay", "0", "commit_siblings", "5"), false),
+        // a commit waits commit_delay microseconds so that the concurrent commits flush their WAL together
+        GROUP_COMMIT(ImmutableMap.of("synchronous_commit", "on", "commit_delay", "1000", "commit_siblings", "2"), false),
+        // commits return before their WAL is flushed, a crash loses the last transactions
+        ASYNC_COMMIT(ImmutableMap.of("synchronous_commit", "off", "commit_delay", "0", "commit_siblings", "5"), false),
+        // the tables are not WAL-logged at all
+        UNLOGGED(ImmutableMap.of("synchronous_commit", "on", "commit_delay", "0", "commit_siblings", "5"), true);
+
+        private final Map<String, String> settings;
+        private final boolean unloggedTables;
+
+        ServerProfile(Map<String, String> settings, boolean unloggedTables) {
+            this.settings = settings;
+            this.unloggedTables = unloggedTables;
+        }
+
+        public Map<String, String> getSettings() {
+            return settings;
+        }
+
+        public boolean hasUnloggedTables() {
+            return unloggedTables;
+        }
+    }
+
+    // null leaves the configuration of the server as it is
+    protected ServerProfile serverProfile;
+    protected String walSyncMethod;
+    protected final LatencyHistogram commitLatencies = new LatencyHistogram();
+
+    // how luW, impW and wsW prevent lost updates and write skew: OPTIMISTIC relies on the isolation level, the others lock
+    // the rows to write first (see PostgresQueries.lockPersonForUpdate)
+    public enum LockingMode { OPTIMISTIC, FOR_UPDATE, FOR_NO_KEY_UPDATE, ADVISORY }
+
+    protected LockingMode lockingMode = LockingMode.OPTIMISTIC;
+    protected final LongAdder locks = new LongAdder();
+    protected final LongAdder lockWaitNanos = new LongAdder();
+
+    // send the statements of executeUpdates in one round trip
+    protected boolean batchStatements;
+    protected final LongAdder transactions = new LongAdder();
+    protected final LongAdder roundTrips = new LongAdder();
 
     public PostgresDriver() {
     }
 
+    // -Dacid.postgres.pool=<max connections> (default 100, 0 opens a new connection for every transaction),
+    // -Dacid.postgres.acquireTimeout=<ms> (default 30000), -Dacid.postgres.prepareThreshold=<executions> (default 5),
+    // -Dacid.isolation=<level> (default read_committed), -Dacid.postgres.schema=plain|indexed (default plain),
+    // -Dacid.postgres.backgroundPersons=<n> (default 0), -Dacid.postgres.backgroundDegree=<knows per person> (default 10),
+    // -Dacid.postgres.reset=drop|truncate|template (default drop), -Dacid.postgres.batch=true|false (default false),
+    // -Dacid.postgres.mode=round_trip|function (default round_trip),
+    // -Dacid.postgres.locking=optimistic|for_update|for_no_key_update|advisory (default optimistic),
+    // -Dacid.postgres.serverProfile=strict|group_commit|async_commit|unlogged, -Dacid.postgres.walSyncMethod=<method>
     public void initDataSource(String host, int port, String username, String password, String dbName) {
+        initDataSource(host, port, username, password, dbName, Integer.getInteger("acid.postgres.pool", 100));
+    }
+
+    public void initDataSource(String host, int port, String username, String password, String dbName, int poolSize) {
         ds = new PGConnectionPoolDataSource();
         ds.setDefaultAutoCommit(false);
         ds.setDatabaseName(dbName);
+        databaseName = dbName;
         ds.setServerName(host);
         ds.setPortNumber(port);
         ds.setUser(username);
         ds.setPassword(password);
+        // statements are prepared on the server from their prepareThreshold-th execution on a connection, 0 never does
+        ds.setPrepareThreshold(Integer.getInteger("acid.postgres.prepareThreshold", 5));
+        setIsolationLevel(IsolationLevel.fromSystemProperties(IsolationLevel.READ_COMMITTED));
+        setSchemaProfile(SchemaProfile.valueOf(System.getProperty("acid.postgres.schema", "plain").toUpperCase()),
+                Long.getLong("acid.postgres.backgroundPersons", 0), Long.getLong("acid.postgres.backgroundDegree", 10));
+        setResetMode(ResetMode.valueOf(System.getProperty("acid.postgres.reset", "drop").toUpperCase()));
+        setBatchStatements(Boolean.getBoolean("acid.postgres.batch"));
+        setExecutionMode(ExecutionMode.valueOf(System.getProperty("acid.postgres.mode", "round_trip").toUpperCase()));
+        setLockingMode(LockingMode.valueOf(System.getProperty("acid.postgres.locking", "optimistic").toUpperCase()));
+        final String serverProfile = System.getProperty("acid.postgres.serverProfile");
+        setServerProfile(serverProfile == null ? null : ServerProfile.valueOf(serverProfile.toUpperCase().replace('-', '_')),
+                System.getProperty("acid.postgres.walSyncMethod"));
+        this.poolSize = poolSize;
+        this.acquireTimeoutMillis = Long.getLong("acid.postgres.acquireTimeout", 30_000);
+        closePool();
+        openPool();
+    }
+
+    // the bulk loads of the blocks take a connection each
+    @Override
+    protected int getParallelism() {
+        return poolSize > 0 ? poolSize : super.getParallelism();
+    }
+
+    protected void openPool() {
+        pool = poolSize > 0 ? new PostgresConnectionPool(ds, poolSize, acquireTimeoutMillis) : null;
+    }
+
+    protected void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    // an autocommit connection to another database of the server, e.g. for CREATE DATABASE
+    protected Connection connect(String dbName) throws SQLException {
+        final PGSimpleDataSource admin = new PGSimpleDataSource();
+        admin.setDatabaseName(dbName);
+        admin.setServerNames(ds.getServerNames());
+        admin.setPortNumbers(ds.getPortNumbers());
+        admin.setUser(ds.getUser());
+        admin.setPassword(ds.getPassword());
+        return admin.getConnection();
     }
 
     public String getPGVersion() throws SQLException {
-        Connection conn = ds.getConnection();
-        Statement st = conn.createStatement();
-        ResultSet rs = st.executeQuery("select version()");
-        rs.next();
-        return rs.getString(1);
+        try (Connection conn = startTransaction(); Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("select version()")) {
+            rs.next();
+            return rs.getString(1);
+        }
     }
 
     @Override
     public Connection startTransaction() throws SQLException {
-        Connection conn = ds.getConnection();
-        conn.setAutoCommit(false);
-
-        //conn.createStatement().executeUpdate(PostgresQueries.isolation_serializable);
-        //conn.createStatement().executeUpdate(PostgresQueries.isolation_repetable_read);
-        conn.createStatement().executeUpdate(PostgresQueries.isolation_read_committed);
+        Connection conn = pool != null ? pool.getConnection() : ds.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            beginTransaction(conn);
+        } catch (SQLException e) {
+            // return the connection to the pool
+            conn.close();
+            throw e;
+        }
 
         return conn;
     }
 
+    // starts the next transaction on a connection after a commit or rollback, at the isolation level of the driver
+    protected void beginTransaction(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            // the BEGIN is sent with this statement
+            st.executeUpdate(isolationQuery(isolationLevel));
+            transactions.increment();
+            roundTrips.increment();
+        }
+    }
+
+    private static String isolationQuery(IsolationLevel isolationLevel) {
+        switch (isolationLevel) {
+            case SERIALIZABLE:
+                return PostgresQueries.isolation_serializable;
+            case REPEATABLE_READ:
+                return PostgresQueries.isolation_repetable_read;
+            default:
+                return PostgresQueries.isolation_read_committed;
+        }
+    }
+
+    @Override
+    public List<IsolationLevel> getSupportedIsolationLevels() {
+        return ISOLATION_LEVELS;
+    }
+
+    @Override
+    public IsolationLevel getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    @Override
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        if (!getSupportedIsolationLevels().contains(isolationLevel)) {
+            throw new IllegalArgumentException("Unsupported isolation level: " + isolationLevel);
+        }
+        this.isolationLevel = isolationLevel;
+    }
+
     @Override
     public void commitTransaction(Connection tt) throws SQLException {
+        roundTrips.increment();
+        final long start = System.nanoTime();
         tt.commit();
+        commitLatencies.record(System.nanoTime() - start);
     }
 
     @Override
     public void abortTransaction(Connection tt) throws SQLException {
+        roundTrips.increment();
         tt.rollback(); // rollback VS. abort?
     }
 
+    @Override
+    protected AbortCause classifyException(Throwable t) {
+        if (t instanceof SQLException && ((SQLException) t).getSQLState() != null) {
+            switch (((SQLException) t).getSQLState()) {
+                case "40001": // serialization_failure
+                    return AbortCause.SERIALIZATION_FAILURE;
+                case "40P01": // deadlock_detected
+                    return AbortCause.DEADLOCK;
+                case "55P03": // lock_not_available
+                    return AbortCause.LOCK_TIMEOUT;
+                case "57014": // query_canceled, e.g. by statement_timeout
+                    return AbortCause.TIMEOUT;
+            }
+        }
+        return super.classifyException(t);
+    }
+
     @Override
     public ResultSet runQuery(Connection tt, String querySpecification, Map<String, Object> stringStringMap) throws Exception {
-        ResultSet rs = null;
-        querySpecification = substituteParameters(querySpecification, stringStringMap);
-        // don't close this statement before returning (e.g. in a try-with-resources block) so we can retrive elements of the resultset
-        Statement st = tt.createStatement();
-        rs = st.executeQuery(querySpecification);
-        return rs;
+        // don't close this statement before returning (e.g. in a try-with-resources block) so we can retrive elements of the resultset,
+        // it is closed with the connection (see PostgresConnectionPool) or with the resultset
+        final PreparedStatement st = ParameterizedQuery.of(querySpecification).prepare(tt, stringStringMap);
+        st.closeOnCompletion();
+        roundTrips.increment();
+        return st.executeQuery();
     }
 
     protected List<Object> toObjectList(Object o) {
@@ -79,41 +284,20 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
         return lo;
     }
 
-    public String substituteParameters(String querySpecification, Map<String, Object> stringStringMap) {
-        // substitute parameters
-        if (stringStringMap != null) {
-            for (Map.Entry<String, Object> param : stringStringMap.entrySet()) {
-                querySpecification = querySpecification.replace("$" + param.getKey(), param.getValue().toString());
-            }
-        }
-        //System.err.println(querySpecification);
-        return querySpecification;
-    }
-
     protected void executeUpdates(String[] commands) {
         executeUpdates(commands, true);
     }
 
     protected void executeUpdates(String[] commands, boolean doCommit) {
-        try (Connection conn = startTransaction(); Statement st = conn.createStatement()) {
-            for (String sql : commands) {
-                // we never need info on the resultset, if any
-                // so we use execute (which allows INSERT/UPDATE/DELETE/SELECT) instead of executeUpdate (which allows only INSERT/UPDATE/DELETE)
-                st.execute(sql);
-            }
-            if (doCommit) {
-                commitTransaction(conn);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        executeUpdates(commands, null, doCommit);
     }
 
     protected void executeUpdates(String[] commands, Map<String, Object> parameters, boolean doCommit) {
-        for(int i=0; i<commands.length; i++) {
-            commands[i]=substituteParameters(commands[i], parameters);
+        try (Connection conn = startTransaction()) {
+            executeUpdates(conn, commands, parameters, doCommit);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
         }
-        executeUpdates(commands, doCommit);
     }
 
     protected void executeUpdates(Connection conn, String[] commands) {
@@ -121,11 +305,26 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     }
 
     protected void executeUpdates(Connection conn, String[] commands, boolean doCommit) {
-        try (Statement st = conn.createStatement()) {
-            for (String sql : commands) {
-                // we never need info on the resultset, if any
-                // so we use execute (which allows INSERT/UPDATE/DELETE/SELECT) instead of executeUpdate (which allows only INSERT/UPDATE/DELETE)
-                st.execute(sql);
+        executeUpdates(conn, commands, null, doCommit);
+    }
+
+    protected void executeUpdates(Connection conn, String[] commands, Map<String, Object> parameters, boolean doCommit) {
+        try {
+            if (batchStatements && commands.length > 1) {
+                // a failing statement aborts the rest of the pipeline, as it would abort the transaction
+                try (PreparedStatement st = ParameterizedQuery.ofBatch(commands).prepare(conn, parameters)) {
+                    roundTrips.increment();
+                    st.execute();
+                }
+            } else {
+                for (String sql : commands) {
+                    try (PreparedStatement st = ParameterizedQuery.of(sql).prepare(conn, parameters)) {
+                        // we never need info on the resultset, if any
+                        // so we use execute (which allows INSERT/UPDATE/DELETE/SELECT) instead of executeUpdate (which allows only INSERT/UPDATE/DELETE)
+                        roundTrips.increment();
+                        st.execute();
+                    }
+                }
             }
             if (doCommit) {
                 commitTransaction(conn);
@@ -135,22 +334,229 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
         }
     }
 
-    protected void executeUpdates(Connection conn, String[] commands, Map<String, Object> parameters, boolean doCommit) {
-        for(int i=0; i<commands.length; i++) {
-            commands[i]=substituteParameters(commands[i], parameters);
+
+    // the background persons, posts and likes are created with the schema, i.e. by every init
+    public void setSchemaProfile(SchemaProfile schemaProfile, long backgroundPersons, long backgroundDegree) {
+        if (backgroundPersons < 0 || backgroundDegree < 0) {
+            throw new IllegalArgumentException("The background persons and degree must not be negative");
         }
-        executeUpdates(conn, commands, doCommit);
+        this.schemaProfile = schemaProfile;
+        this.backgroundPersons = backgroundPersons;
+        this.backgroundDegree = Math.min(backgroundDegree, Math.max(0, backgroundPersons - 1));
     }
 
+    public SchemaProfile getSchemaProfile() {
+        return schemaProfile;
+    }
 
+    // creates the tables and the indexes, the inits with bulk fixtures call createTables(), load their fixture and
+    // then createIndexes()
     protected void createSchema() {
-        executeUpdates(PostgresQueries.tablesCreate);
+        createTables();
+        createIndexes();
+    }
+
+    protected void createTables() {
+        executeUpdates(serverProfile != null && serverProfile.hasUnloggedTables() ? PostgresQueries.tablesCreateUnlogged : PostgresQueries.tablesCreate);
+        if (executionMode == ExecutionMode.FUNCTION) {
+            executeUpdates(PostgresQueries.functionsCreate);
+        }
+        if (backgroundPersons > 0 && !backgroundLoaded) {
+            loadBackground(backgroundPersons, Math.max(1, backgroundPersons / 10), backgroundDegree);
+        }
+    }
+
+    protected void createIndexes() {
+        if (schemaProfile == SchemaProfile.INDEXED) {
+            executeUpdates(PostgresQueries.indexesCreate);
+        }
+        executeUpdates(PostgresQueries.analyze);
+    }
+
+    // background data with ids from 1000000000 on, disjoint from the ids of the tests: every person knows the degree next
+    // persons and every post is liked by degree persons. The value and version of the persons are null, so that the
+    // checks of the tests skip them.
+    protected void loadBackground(long persons, long posts, long degree) {
+        final long offset = 1_000_000_000L;
+        bulkLoad(conn -> {
+            PostgresBulkLoader.copy(conn, "person", "id, numFriends", rows -> {
+                for (long i = 1; i <= persons; i++) {
+                    rows.value(offset + i).value(degree).endRow();
+                }
+            });
+            PostgresBulkLoader.copy(conn, "post", "id", rows -> {
+                for (long i = 1; i <= posts; i++) {
+                    rows.value(offset + i).endRow();
+                }
+            });
+            PostgresBulkLoader.copy(conn, "knows", "person1id, person2id", rows -> {
+                for (long i = 1; i <= persons; i++) {
+                    for (long j = 1; j <= degree; j++) {
+                        rows.value(offset + i).value(offset + 1 + (i + j - 1) % persons).endRow();
+                    }
+                }
+            });
+            PostgresBulkLoader.copy(conn, "likes", "personid, postid", rows -> {
+                for (long i = 1; i <= posts; i++) {
+                    for (long j = 1; j <= degree; j++) {
+                        rows.value(offset + 1 + (31 * i + j) % persons).value(offset + i).endRow();
+                    }
+                }
+            });
+        });
+    }
+
+    protected interface BulkLoad {
+        void load(Connection conn) throws SQLException;
+    }
+
+    // runs the COPYs of the load in one transaction
+    protected void bulkLoad(BulkLoad load) {
+        try (Connection conn = startTransaction()) {
+            load.load(conn);
+            commitTransaction(conn);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void setServerProfile(ServerProfile serverProfile, String walSyncMethod) {
+        this.serverProfile = serverProfile;
+        this.walSyncMethod = walSyncMethod;
+    }
+
+    public ServerProfile getServerProfile() {
+        return serverProfile;
+    }
+
+    // configures the server for the whole cluster, the settings are kept in postgresql.auto.conf; they can all be changed
+    // with a reload, so the server does not restart
+    public void applyServerProfile() {
+        if (serverProfile == null) return;
+        try (Connection conn = connect(databaseName); Statement st = conn.createStatement()) {
+            for (Map.Entry<String, String> setting : serverProfile.getSettings().entrySet()) {
+                st.execute(String.format("alter system set %s = '%s'", setting.getKey(), setting.getValue()));
+            }
+            st.execute(walSyncMethod == null ? "alter system reset wal_sync_method" : String.format("alter system set wal_sync_method = '%s'", walSyncMethod));
+            st.execute("select pg_reload_conf()");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void setLockingMode(LockingMode lockingMode) {
+        this.lockingMode = lockingMode;
+    }
+
+    public LockingMode getLockingMode() {
+        return lockingMode;
+    }
+
+    // takes the lock of the locking mode on a person, or on a pair of persons with person1Id and person2Id
+    protected void lock(Connection conn, Map<String, Object> parameters, boolean pair) throws SQLException {
+        final String query;
+        switch (lockingMode) {
+            case FOR_UPDATE:
+                query = pair ? PostgresQueries.lockPairForUpdate : PostgresQueries.lockPersonForUpdate;
+                break;
+            case FOR_NO_KEY_UPDATE:
+                query = pair ? PostgresQueries.lockPairForNoKeyUpdate : PostgresQueries.lockPersonForNoKeyUpdate;
+                break;
+            case ADVISORY:
+                query = pair ? PostgresQueries.lockPairAdvisory : PostgresQueries.lockPersonAdvisory;
+                break;
+            default:
+                return;
+        }
+        // the lock wait includes the round trip of the statement
+        final long start = System.nanoTime();
+        try (PreparedStatement st = ParameterizedQuery.of(query).prepare(conn, parameters)) {
+            roundTrips.increment();
+            st.execute();
+        } finally {
+            locks.increment();
+            lockWaitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setBatchStatements(boolean batchStatements) {
+        this.batchStatements = batchStatements;
+    }
+
+    public void setResetMode(ResetMode resetMode) {
+        this.resetMode = resetMode;
+    }
+
+    public ResetMode getResetMode() {
+        return resetMode;
     }
 
     @Override
     public void nukeDatabase() {
-        // drop all the tables
-        executeUpdates(PostgresQueries.tablesClear);
+        switch (resetMode) {
+            case TEMPLATE:
+                resetFromTemplate();
+                break;
+            case TRUNCATE:
+                // creates the tables on the first reset
+                executeUpdates(PostgresQueries.tablesCreate);
+                executeUpdates(PostgresQueries.tablesTruncate);
+                backgroundLoaded = false;
+                break;
+            default:
+                // drop all the tables
+                executeUpdates(PostgresQueries.tablesClear);
+                backgroundLoaded = false;
+        }
+    }
+
+    // the template is built once per schema profile and background size and kept on the server for the next runs, the
+    // tests then run in <database>_acid, which is dropped and copied from the template on every reset
+    protected void resetFromTemplate() {
+        final String template = String.format("%s_template_%s_%d_%d%s",
+                databaseName, schemaProfile.name(), backgroundPersons, backgroundDegree,
+                serverProfile != null && serverProfile.hasUnloggedTables() ? "_unlogged" : "").toLowerCase();
+        final String database = (databaseName + "_acid").toLowerCase();
+        // nothing may be connected to the database while it is dropped, nor to the template while it is copied
+        closePool();
+        try (Connection conn = connect(databaseName); Statement st = conn.createStatement()) {
+            if (!databaseExists(conn, template)) {
+                st.executeUpdate("create database " + template);
+                try {
+                    ds.setDatabaseName(template);
+                    backgroundLoaded = false;
+                    createSchema();
+                } catch (RuntimeException e) {
+                    st.executeUpdate("drop database if exists " + template);
+                    throw e;
+                }
+            }
+            st.executeUpdate("drop database if exists " + database);
+            st.executeUpdate("create database " + database + " template " + template);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            ds.setDatabaseName(database);
+            openPool();
+        }
+        backgroundLoaded = true;
+    }
+
+    private static boolean databaseExists(Connection conn, String dbName) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("select 1 from pg_database where datname = ?")) {
+            st.setString(1, dbName);
+            try (ResultSet rs = st.executeQuery()) {
+                return rs.next();
+            }
+        }
     }
 
     @Override
@@ -161,13 +567,23 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
 
     @Override
     public void atomicityC(Map<String, Object> parameters) {
-        executeUpdates(PostgresQueries.atomicityCTx, parameters, true);
+        executeUpdates(executionMode == ExecutionMode.FUNCTION ? PostgresQueries.atomicityCTxCall : PostgresQueries.atomicityCTx, parameters, true);
     }
 
 
     @Override
     public void atomicityRB(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            if (executionMode == ExecutionMode.FUNCTION) {
+                final ResultSet rs = runQuery(conn, PostgresQueries.atomicityRBCall, parameters);
+                rs.next();
+                if (rs.getBoolean(1)) {
+                    commitTransaction(conn);
+                } else {
+                    abortTransaction(conn);
+                }
+                return;
+            }
             executeUpdates(conn, PostgresQueries.atomicityRBxP1update, parameters, false);
             ResultSet rs = runQuery(conn, PostgresQueries.atomicityRBxP2check, parameters);
             if (rs.next()) {
@@ -202,14 +618,27 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     }
 
     @Override
-    public void g0Init() {
-        createSchema();
-        executeUpdates(PostgresQueries.g0Init);
+    public void g0Init(long numPairs) {
+        createTables();
+        bulkLoad(conn -> {
+            PostgresBulkLoader.copy(conn, "person", "id, versionHistory", rows -> {
+                for (long id = 1; id <= 2 * numPairs; id++) {
+                    rows.value(id).value("{}").endRow();
+                }
+            });
+            PostgresBulkLoader.copy(conn, "knows", "person1id, person2id, versionHistory", rows -> {
+                for (long i = 1; i <= numPairs; i++) {
+                    rows.value(2 * i - 1).value(2 * i).value("{}").endRow();
+                    rows.value(2 * i).value(2 * i - 1).value("{}").endRow();
+                }
+            });
+        });
+        createIndexes();
     }
 
     @Override
     public Map<String, Object> g0(Map<String, Object> parameters) {
-        executeUpdates(PostgresQueries.g0, parameters, true);
+        executeUpdates(executionMode == ExecutionMode.FUNCTION ? PostgresQueries.g0Call : PostgresQueries.g0, parameters, true);
 
         return ImmutableMap.of();
     }
@@ -241,7 +670,7 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> g1aW(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
-            executeUpdates(conn, PostgresQueries.g1a1, parameters, false);
+            executeUpdates(conn, executionMode == ExecutionMode.FUNCTION ? PostgresQueries.g1a1Call : PostgresQueries.g1a1, parameters, false);
             abortTransaction(conn);
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -275,7 +704,7 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> g1bW(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
-            executeUpdates(conn, PostgresQueries.g1b1, parameters, true);
+            executeUpdates(conn, executionMode == ExecutionMode.FUNCTION ? PostgresQueries.g1b1Call : PostgresQueries.g1b1, parameters, true);
 
             return ImmutableMap.of();
         } catch (SQLException e) {
@@ -309,8 +738,13 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> g1c(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
-            executeUpdates(conn, PostgresQueries.g1c1, parameters, false);
-            final ResultSet result = runQuery(conn, PostgresQueries.g1c2, parameters);
+            final ResultSet result;
+            if (executionMode == ExecutionMode.FUNCTION) {
+                result = runQuery(conn, PostgresQueries.g1cCall, parameters);
+            } else {
+                executeUpdates(conn, PostgresQueries.g1c1, parameters, false);
+                result = runQuery(conn, PostgresQueries.g1c2, parameters);
+            }
             if (!result.next()) throw new IllegalStateException("G1c T2 result empty");
             final long person2Version = result.getLong(1);
             commitTransaction(conn);
@@ -324,14 +758,20 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     }
 
     @Override
-    public void impInit() {
-        createSchema();
-        executeUpdates(PostgresQueries.impInit);
+    public void impInit(long numPersons) {
+        createTables();
+        bulkLoad(conn -> PostgresBulkLoader.copy(conn, "person", "id, version", rows -> {
+            for (long id = 1; id <= numPersons; id++) {
+                rows.value(id).value(1).endRow();
+            }
+        }));
+        createIndexes();
     }
 
     @Override
     public Map<String, Object> impW(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            lock(conn, parameters, false);
             executeUpdates(conn, PostgresQueries.impW, parameters, true);
 
             return ImmutableMap.of();
@@ -345,6 +785,16 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> impR(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            if (executionMode == ExecutionMode.FUNCTION) {
+                final ResultSet result = runQuery(conn, PostgresQueries.impRCall, parameters);
+                if (!result.next()) throw new IllegalStateException("IMP result empty");
+                final long firstRead = result.getLong(1);
+                final long secondRead = result.getLong(2);
+                commitTransaction(conn);
+
+                return ImmutableMap.of("firstRead", firstRead, "secondRead", secondRead);
+            }
+
             final ResultSet result1 = runQuery(conn, PostgresQueries.impR, parameters);
             if (!result1.next()) throw new IllegalStateException("IMP result1 empty");
             final long firstRead = result1.getLong(1);
@@ -387,6 +837,16 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> pmpR(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            if (executionMode == ExecutionMode.FUNCTION) {
+                final ResultSet result = runQuery(conn, PostgresQueries.pmpRCall, parameters);
+                if (!result.next()) throw new IllegalStateException("PMP result empty");
+                final long firstRead = result.getLong(1);
+                final long secondRead = result.getLong(2);
+                commitTransaction(conn);
+
+                return ImmutableMap.of("firstRead", firstRead, "secondRead", secondRead);
+            }
+
             final ResultSet result1 = runQuery(conn, PostgresQueries.pmpR, parameters);
             if (!result1.next()) throw new IllegalStateException("PMP result1 empty");
             final long firstRead = result1.getLong(1);
@@ -418,12 +878,11 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
         try (Connection conn = startTransaction()) {
             Random random = new Random();
             for (int i = 0; i < 100; i++) {
-                long personId  = random.nextInt((int) parameters.get("cycleSize")+1);
-                ResultSet rs = runQuery(conn, PostgresQueries.otvWquery, ImmutableMap.of("personId", personId));
-                while (rs.next()) {
-                    executeUpdates(PostgresQueries.otvWupdate, ImmutableMap.of("p1id", rs.getLong(1), "p2id", rs.getLong(2), "p3id", rs.getLong(3), "p4id", rs.getLong(4)), true);
+                if (i > 0) {
+                    beginTransaction(conn);
                 }
-                commitTransaction(conn);
+                long personId  = random.nextInt((int) parameters.get("cycleSize")+1);
+                executeUpdates(conn, PostgresQueries.otvW, ImmutableMap.of("personId", personId), true);
             }
             return ImmutableMap.of();
         } catch (SQLException e) {
@@ -436,6 +895,19 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> otvR(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            if (executionMode == ExecutionMode.FUNCTION) {
+                final ResultSet result = runQuery(conn, PostgresQueries.otvRCall, parameters);
+                if (!result.next()) throw new IllegalStateException("OTV2 result empty");
+                final List<Object> firstRead = new ArrayList<>();
+                final List<Object> secondRead = new ArrayList<>();
+                for (int i = 1; i <= 4; i++) {
+                    firstRead.add(result.getLong(i));
+                    secondRead.add(result.getLong(4 + i));
+                }
+
+                return ImmutableMap.of("firstRead", firstRead, "secondRead", secondRead);
+            }
+
             final ResultSet result1 = runQuery(conn, PostgresQueries.otvR, parameters);
             if (!result1.next()) throw new IllegalStateException("OTV2 result1 empty");
             final List<Object> firstRead = new ArrayList();
@@ -489,6 +961,15 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> frR(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            if (executionMode == ExecutionMode.FUNCTION) {
+                final ResultSet result = runQuery(conn, PostgresQueries.frRCall, parameters);
+                if (!result.next() || result.getArray(1) == null) throw new IllegalStateException("FR2 result empty");
+                final List<Object> firstRead = toObjectList((Object[])result.getArray(1).getArray());
+                final List<Object> secondRead = toObjectList((Object[])result.getArray(2).getArray());
+
+                return ImmutableMap.of("firstRead", firstRead, "secondRead", secondRead);
+            }
+
             final ResultSet result1 = runQuery(conn, PostgresQueries.frR, parameters);
             if (!result1.next()) throw new IllegalStateException("FR2 result1 empty");
             final List<Object> firstRead = toObjectList((Object[])result1.getArray(3).getArray());
@@ -516,6 +997,7 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> luW(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            lock(conn, ImmutableMap.of("personId", parameters.get("person1Id")), false);
             executeUpdates(conn, PostgresQueries.luW, parameters, true);
 
             return ImmutableMap.of();
@@ -545,18 +1027,36 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     }
 
     @Override
-    public void wsInit() {
-        createSchema();
-        // create 10 pairs of persons with indices (1,2), ..., (19,20)
-        for (int i = 1; i <= 10; i++) {
-            // we utilise separate transactions for each iteration, but it should not matter in the initialization.
-            executeUpdates(PostgresQueries.wsInit, ImmutableMap.of("person1Id", 2*i-1, "person2Id", 2*i), true);
+    public void wsInit(long numPairs) {
+        createTables();
+        // create pairs of persons with indices (1,2), ..., (2*numPairs-1,2*numPairs), copying blocks of pairs in parallel
+        forEachPairBlock(numPairs, 100_000, getParallelism(), (firstPair, lastPair) ->
+                bulkLoad(conn -> PostgresBulkLoader.copy(conn, "person", "id, value", rows -> {
+                    for (long i = firstPair; i <= lastPair; i++) {
+                        rows.value(2 * i - 1).value(70).endRow();
+                        rows.value(2 * i).value(80).endRow();
+                    }
+                })));
+        createIndexes();
+        if (schemaProfile == SchemaProfile.PLAIN) {
+            executeUpdates(PostgresQueries.wsIndex);
         }
     }
 
     @Override
     public Map<String, Object> wsW(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
+            lock(conn, parameters, true);
+            if (executionMode == ExecutionMode.FUNCTION) {
+                final long personId = new Random().nextBoolean() ?
+                        (long) parameters.get("person1Id") :
+                        (long) parameters.get("person2Id");
+                executeUpdates(conn, PostgresQueries.wsWCall, ImmutableMap.of("person1Id", parameters.get("person1Id"),
+                        "person2Id", parameters.get("person2Id"), "sleepTime", parameters.get("sleepTime"), "personId", personId), true);
+
+                return ImmutableMap.of();
+            }
+
             final ResultSet rs = runQuery(conn, PostgresQueries.wsWquery, parameters);
 
             if (!rs.next()) {
@@ -579,7 +1079,8 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     @Override
     public Map<String, Object> wsR(Map<String, Object> parameters) {
         try (Connection conn = startTransaction()) {
-            final ResultSet rs = runQuery(conn, PostgresQueries.wsR, ImmutableMap.of());
+            final ResultSet rs = runQuery(conn, PostgresQueries.wsR,
+                    ImmutableMap.of("firstPair", firstPair(parameters), "lastPair", lastPair(parameters)));
 
             if (rs.next()) {
                 return ImmutableMap.of(
@@ -599,8 +1100,29 @@ public class PostgresDriver extends TestDriver<Connection, Map<String, Object>,
     }
 
     @Override
-    public void close() throws Exception {
+    public Map<String, Object> getStatistics() {
+        final Map<String, Object> statistics = new LinkedHashMap<>(pool != null ? pool.getStatistics() : ImmutableMap.of("poolSize", 0));
+        final long numTransactions = transactions.sum();
+        final long numRoundTrips = roundTrips.sum();
+        statistics.put("transactions", numTransactions);
+        statistics.put("roundTrips", numRoundTrips);
+        statistics.put("roundTripsPerTransaction", numTransactions > 0 ? (double) numRoundTrips / numTransactions : 0.0);
+        statistics.put("commits", commitLatencies.getCount());
+        statistics.put("commitMillis", commitLatencies.getMean() * commitLatencies.getCount() / 1e6);
+        statistics.put("meanCommitMillis", commitLatencies.getMean() / 1e6);
+        statistics.put("p99CommitMillis", commitLatencies.getValueAtPercentile(99) / 1e6);
+        if (lockingMode != LockingMode.OPTIMISTIC) {
+            final long numLocks = locks.sum();
+            statistics.put("locks", numLocks);
+            statistics.put("lockWaitMillis", lockWaitNanos.sum() / 1e6);
+            statistics.put("meanLockWaitMillis", numLocks > 0 ? lockWaitNanos.sum() / 1e6 / numLocks : 0.0);
+        }
+        return statistics;
+    }
 
+    @Override
+    public void close() throws Exception {
+        closePool();
     }
 
 }
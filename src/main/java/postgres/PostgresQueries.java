@@ -1,5 +1,7 @@
 package postgres;
 
+import java.util.Arrays;
+
 public final class PostgresQueries {
     public static final String isolation_serializable = "set transaction isolation level serializable";
     public static final String isolation_repetable_read = "set transaction isolation level repeatable read";
@@ -14,6 +16,24 @@ public final class PostgresQueries {
             , "create sequence if not exists id_seq increment by -1 start -1"
     };
 
+    // the tables of the unlogged server profile skip the WAL, a crash empties them
+    public final static String[] tablesCreateUnlogged = Arrays.stream(tablesCreate)
+            .map(query -> query.replace("create table", "create unlogged table")).toArray(String[]::new);
+
+    // indexed schema profile: unique indexes on the ids and composite indexes on the edges, so that the tests use index
+    // scans and serializable transactions take predicate locks on index pages instead of whole relations. They are built
+    // after the bulk loads, which is much faster than maintaining them row by row.
+    // The likes index is not unique, as the concurrent PMP writers insert the same like.
+    public final static String[] indexesCreate = {
+            "create unique index if not exists forum_id on forum (id)"
+            , "create unique index if not exists post_id on post (id)"
+            , "create unique index if not exists person_id on person (id)"
+            , "create index if not exists likes_postid_personid on likes (postid, personid)"
+            , "create unique index if not exists knows_person1id_person2id on knows (person1id, person2id)"
+    };
+
+    public final static String[] analyze = { "analyze" };
+
     // SQL TRUNCATE does not work az nukeDatabase is also run before CREATEs
     public final static String[] tablesClear = {
             "drop table if exists forum"
@@ -21,6 +41,14 @@ public final class PostgresQueries {
             , "drop table if exists person"
             , "drop table if exists likes"
             , "drop table if exists knows"
+            , "drop sequence if exists id_seq"
+    };
+
+    // keeps the tables and their indexes, the fast path of the reset when there is no template database
+    // id_seq is not owned by a column, so restart identity does not reset it
+    public final static String[] tablesTruncate = {
+            "truncate forum, post, person, likes, knows restart identity"
+            , "alter sequence if exists id_seq restart"
     };
 
     public final static String[] atomicityInit = {
@@ -32,20 +60,16 @@ public final class PostgresQueries {
     public final static String[] atomicityCTx = {
             "update person set emails = array_append(emails, '$newEmail') where id = $person1Id"
             , "insert into person (id) select '$person2Id' from person where id = $person1Id"
-            , "insert into knows (person1id, person2id, creationDate) select p1.id, p2.id, '$creationDate' from person p1, person p2 where p1.id = $person1Id and p2.id = $person2Id"
-            , "insert into knows (person1id, person2id, creationDate) select p2.id, p1.id, '$creationDate' from person p1, person p2 where p1.id = $person1Id and p2.id = $person2Id"
+            , "insert into knows (person1id, person2id, creationDate) select p1.id, p2.id, '$since' from person p1, person p2 where p1.id = $person1Id and p2.id = $person2Id"
+            , "insert into knows (person1id, person2id, creationDate) select p2.id, p1.id, '$since' from person p1, person p2 where p1.id = $person1Id and p2.id = $person2Id"
     };
 
     public final static String[] atomicityRBxP1update = {"update person set emails = array_append(emails, '$newEmail') where id = $person1Id"};
     public final static String atomicityRBxP2check = "select id from person where id = $person2Id";
     public final static String[] atomicityRBxP2create = {"insert into person (id, emails) values ($person2Id, ARRAY[]::varchar[])"};
 
-    public final static String atomicityCheck = "select count(*) as numPersons, count(name) as numNames, sum(array_length(emails, 1)) as numEmails from person";
+    public final static String atomicityCheck = "select count(*) as numPersons, count(name) as numNames, sum(array_length(emails, 1)) as numEmails from person where id < 1000000000";
 
-    public final static String[] g0Init = {
-            "insert into person (id, versionHistory) values (1, ARRAY[]::bigint[0]), (2, ARRAY[]::bigint[0])"
-            , "insert into knows (person1id, person2id, versionHistory) values (1, 2, ARRAY[]::bigint[0]), (2, 1, ARRAY[]::bigint[0])"
-    };
     public final static String[] g0 = {
             "update person set versionHistory = versionHistory || $transactionId::bigint where id = $person1Id"
             , "update person set versionHistory = versionHistory || $transactionId::bigint where id = $person2Id"
@@ -78,7 +102,6 @@ public final class PostgresQueries {
     public final static String[] g1c1 = {"update person set version = $transactionId where id = $person1Id"};
     public final static String g1c2 = "select version as person2Version from person where id = $person2Id";
 
-    public final static String[] impInit = { "insert into person (id, version) values (1, 1)" };
     public final static String[] impW = { "update person set version = version + 1 where id = $personId" };
     public final static String impR = "select version as valueRead from person where id = $personId";
 
@@ -94,19 +117,22 @@ public final class PostgresQueries {
             , "insert into knows (person1id, person2id) values (1, 2), (2, 3), (3, 4), (4, 1)"
             , "insert into knows (person2id, person1id) values (1, 2), (2, 3), (3, 4), (4, 1)"
     };
-    public final static String otvWquery =
-            "select p1.id, p2.id, p3.id, p4.id " +
-                    "from person p1, person p2, person p3, person p4 " +
-                    ", knows k1, knows k2, knows k3, knows k4 " +
-                    "where p1.id = $personId " +
-                    "and p1.id = k1.person1id and k1.person2id = p2.id " +
-                    "and p2.id = k2.person1id and k2.person2id = p3.id " +
-                    "and p3.id = k3.person1id and k3.person2id = p4.id " +
-                    "and p4.id = k4.person1id and k4.person2id = p1.id " +
-                    "and p1.id not in (p2.id, p3.id, p4.id) " +
-                    "and p2.id not in (p3.id, p4.id) " +
-                    "and p3.id <> p4.id";
-    public final static String[] otvWupdate = { "update person set version = version + 1 where id in ($p1id, $p2id, $p3id, $p4id)" };
+    // finds the 4-cycles through the person and bumps the version of each of their persons once per cycle, atomically in
+    // one statement
+    public final static String[] otvW = {
+            "with " +
+                    "cycle as (select p1.id as p1id, p2.id as p2id, p3.id as p3id, p4.id as p4id " +
+                    "from person p1, person p2, person p3, person p4, knows k1, knows k2, knows k3, knows k4 " +
+                    "where p1.id = $personId and p1.id = k1.person1id and k1.person2id = p2.id and p2.id = k2.person1id and k2.person2id = p3.id and p3.id = k3.person1id and k3.person2id = p4.id and p4.id = k4.person1id and k4.person2id = p1.id " +
+                    "and p1.id not in (p2.id, p3.id, p4.id) and p2.id not in (p3.id, p4.id) and p3.id <> p4.id)" +
+                    ", affectedPerson as (select p.id as apid, count(*) as times " +
+                    "from person p, cycle " +
+                    "where p.id in (cycle.p1id, cycle.p2id, cycle.p3id, cycle.p4id) group by p.id) " +
+                    "update person " +
+                    "set version = version + ap.times " +
+                    "from affectedPerson ap " +
+                    "where id = ap.apid"
+    };
     public final static String otvR = "select p1.version, p2.version, p3.version, p4.version " +
             "from person p1, person p2, person p3, person p4 " +
             ", knows k1, knows k2, knows k3, knows k4 " +
@@ -166,11 +192,136 @@ public final class PostgresQueries {
             "where p1.id = $personId " +
             "group by p1.id, p1.numFriends";
 
-    public final static String[] wsInit = { "insert into person (id, value) values ($person1Id, 70), ($person2Id, 80)" };
-    public final static String wsWquery = "select p1, id, p2.id from person p1, person p2 where p1.id = $persion1Id and p2.id = $person2Id and p1.value + p2.value < 100";
+    // built after the bulk load, so that the blocks of wsR are index range scans
+    public final static String[] wsIndex = { "create index if not exists person_id_ws on person (id)", "analyze person" };
+    public final static String wsWquery = "select p1.id, p2.id from person p1, person p2 where p1.id = $person1Id and p2.id = $person2Id and p1.value + p2.value < 100";
     public final static String[] wsWupdate = { "update person set value = value - 100 where id = $personId"};
     public final static String wsR = "select p1.id AS p1id, p1.value AS p1value, p2.id AS p2id, p2.value AS p2value " +
             "from person p1, person p2 " +
-            "where p1.id+1 = p2.id " +
-            "and p1.value + p2.value <= 0 ";
+            "where p1.id between 2 * $firstPair - 1 and 2 * $lastPair - 1 " +
+            "and p1.id % 2 = 1 " +
+            "and p1.id+1 = p2.id " +
+            "and p1.value + p2.value <= 0 " +
+            "limit 1";
+
+    // one-call mode: the operations with several statements or a sleep in their transaction are installed as PL/pgSQL
+    // functions, so that the client calls each in one round trip and no lock is held across the network. The arguments
+    // are prefixed with in_ so that they do not clash with the columns.
+    public final static String[] functionsCreate = {
+            "create or replace function acid_atomicity_c(in_person1id bigint, in_person2id bigint, in_newemail varchar, in_since varchar) returns void as $$\n" +
+            "begin\n" +
+            "  update person set emails = array_append(emails, in_newemail) where id = in_person1id;\n" +
+            "  insert into person (id) select in_person2id from person where id = in_person1id;\n" +
+            "  insert into knows (person1id, person2id, creationDate) select p1.id, p2.id, in_since from person p1, person p2 where p1.id = in_person1id and p2.id = in_person2id;\n" +
+            "  insert into knows (person1id, person2id, creationDate) select p2.id, p1.id, in_since from person p1, person p2 where p1.id = in_person1id and p2.id = in_person2id;\n" +
+            "end $$ language plpgsql"
+            // returns false if person2 exists, the client then rolls the transaction back
+            , "create or replace function acid_atomicity_rb(in_person1id bigint, in_person2id bigint, in_newemail varchar) returns boolean as $$\n" +
+            "begin\n" +
+            "  update person set emails = array_append(emails, in_newemail) where id = in_person1id;\n" +
+            "  if exists (select 1 from person where id = in_person2id) then\n" +
+            "    return false;\n" +
+            "  end if;\n" +
+            "  insert into person (id, emails) values (in_person2id, ARRAY[]::varchar[]);\n" +
+            "  return true;\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_g0(in_person1id bigint, in_person2id bigint, in_transactionid bigint) returns void as $$\n" +
+            "begin\n" +
+            "  update person set versionHistory = versionHistory || in_transactionid where id = in_person1id;\n" +
+            "  update person set versionHistory = versionHistory || in_transactionid where id = in_person2id;\n" +
+            "  update knows set versionHistory = versionHistory || in_transactionid where person1id = in_person1id and person2id = in_person2id;\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_g1a_w(in_personid bigint, in_sleeptime bigint) returns void as $$\n" +
+            "begin\n" +
+            "  perform id from person where id = in_personid;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "  update person set version = 2 where id = in_personid;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_g1b_w(in_personid bigint, in_even bigint, in_odd bigint, in_sleeptime bigint) returns void as $$\n" +
+            "begin\n" +
+            "  update person set version = in_even where id = in_personid;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "  update person set version = in_odd where id = in_personid;\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_g1c(in_person1id bigint, in_person2id bigint, in_transactionid bigint) returns bigint as $$\n" +
+            "begin\n" +
+            "  update person set version = in_transactionid where id = in_person1id;\n" +
+            "  return (select version from person where id = in_person2id);\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_imp_r(in_personid bigint, in_sleeptime bigint, out firstread bigint, out secondread bigint) as $$\n" +
+            "begin\n" +
+            "  select version into firstread from person where id = in_personid;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "  select version into secondread from person where id = in_personid;\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_pmp_r(in_postid bigint, in_sleeptime bigint, out firstread bigint, out secondread bigint) as $$\n" +
+            "begin\n" +
+            "  select count(pe.id) into firstread from post po, likes l, person pe where po.id = in_postid and po.id = l.postid and l.personid = pe.id;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "  select count(pe.id) into secondread from post po, likes l, person pe where po.id = in_postid and po.id = l.postid and l.personid = pe.id;\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_otv_r(in_personid bigint, in_sleeptime bigint, " +
+            "out first1 bigint, out first2 bigint, out first3 bigint, out first4 bigint, " +
+            "out second1 bigint, out second2 bigint, out second3 bigint, out second4 bigint) as $$\n" +
+            "begin\n" +
+            "  select p1.version, p2.version, p3.version, p4.version into first1, first2, first3, first4 " +
+            "from person p1, person p2, person p3, person p4, knows k1, knows k2, knows k3, knows k4 " +
+            "where p1.id = in_personid and p1.id = k1.person1id and k1.person2id = p2.id and p2.id = k2.person1id and k2.person2id = p3.id " +
+            "and p3.id = k3.person1id and k3.person2id = p4.id and p4.id = k4.person1id and k4.person2id = p1.id " +
+            "and p1.id not in (p2.id, p3.id, p4.id) and p2.id not in (p3.id, p4.id) and p3.id <> p4.id;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "  select p1.version, p2.version, p3.version, p4.version into second1, second2, second3, second4 " +
+            "from person p1, person p2, person p3, person p4, knows k1, knows k2, knows k3, knows k4 " +
+            "where p1.id = in_personid and p1.id = k1.person1id and k1.person2id = p2.id and p2.id = k2.person1id and k2.person2id = p3.id " +
+            "and p3.id = k3.person1id and k3.person2id = p4.id and p4.id = k4.person1id and k4.person2id = p1.id " +
+            "and p1.id not in (p2.id, p3.id, p4.id) and p2.id not in (p3.id, p4.id) and p3.id <> p4.id;\n" +
+            "end $$ language plpgsql"
+            , "create or replace function acid_fr_r(in_personid bigint, in_sleeptime bigint, out firstread bigint[], out secondread bigint[]) as $$\n" +
+            "begin\n" +
+            "  with recursive path as (" +
+            "select in_personid as endpoint, ARRAY[]::bigint[] nodes, ARRAY[]::bigint[] versions " +
+            "union select k.person2id, array_append(nodes, k.person2id), array_append(versions, p.version) " +
+            "from path, knows k, person p " +
+            "where endpoint = k.person1id and k.person2id = p.id and k.person2id <> ALL (nodes) and coalesce(array_length(nodes, 1), 0) < 4) " +
+            "select versions into firstread from path where endpoint = in_personid and array_length(nodes, 1) is not null;\n" +
+            "  perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "  with recursive path as (" +
+            "select in_personid as endpoint, ARRAY[]::bigint[] nodes, ARRAY[]::bigint[] versions " +
+            "union select k.person2id, array_append(nodes, k.person2id), array_append(versions, p.version) " +
+            "from path, knows k, person p " +
+            "where endpoint = k.person1id and k.person2id = p.id and k.person2id <> ALL (nodes) and coalesce(array_length(nodes, 1), 0) < 4) " +
+            "select versions into secondread from path where endpoint = in_personid and array_length(nodes, 1) is not null;\n" +
+            "end $$ language plpgsql"
+            // the person to update is chosen by the client, as in the round-trip mode
+            , "create or replace function acid_ws_w(in_person1id bigint, in_person2id bigint, in_sleeptime bigint, in_personid bigint) returns void as $$\n" +
+            "begin\n" +
+            "  if not exists (select 1 from person p1, person p2 where p1.id = in_person1id and p2.id = in_person2id and p1.value + p2.value < 100) then\n" +
+            "    perform pg_sleep(in_sleeptime / 1000.0);\n" +
+            "    update person set value = value - 100 where id = in_personid;\n" +
+            "  end if;\n" +
+            "end $$ language plpgsql"
+    };
+
+    public final static String[] atomicityCTxCall = { "select acid_atomicity_c($person1Id, $person2Id, $newEmail::varchar, $since::varchar)" };
+    public final static String atomicityRBCall = "select acid_atomicity_rb($person1Id, $person2Id, $newEmail::varchar)";
+    public final static String[] g0Call = { "select acid_g0($person1Id, $person2Id, $transactionId)" };
+    public final static String[] g1a1Call = { "select acid_g1a_w($personId, $sleepTime)" };
+    public final static String[] g1b1Call = { "select acid_g1b_w($personId, $even, $odd, $sleepTime)" };
+    public final static String g1cCall = "select acid_g1c($person1Id, $person2Id, $transactionId) as person2Version";
+    public final static String impRCall = "select firstread, secondread from acid_imp_r($personId, $sleepTime)";
+    public final static String pmpRCall = "select firstread, secondread from acid_pmp_r($postId, $sleepTime)";
+    public final static String otvRCall = "select * from acid_otv_r($personId, $sleepTime)";
+    public final static String frRCall = "select firstread, secondread from acid_fr_r($personId, $sleepTime)";
+    public final static String[] wsWCall = { "select acid_ws_w($person1Id, $person2Id, $sleepTime, $personId)" };
+
+    // pessimistic variants of luW, impW and wsW: the rows the operation writes are locked before it reads them, either
+    // the row locks of SELECT ... FOR [NO KEY] UPDATE or a transaction-level advisory lock on the id of the (first) person.
+    // The persons of a pair are locked in id order, so that two writers of a pair cannot deadlock.
+    public final static String lockPersonForUpdate = "select id from person where id = $personId for update";
+    public final static String lockPersonForNoKeyUpdate = "select id from person where id = $personId for no key update";
+    public final static String lockPersonAdvisory = "select pg_advisory_xact_lock($personId)";
+    public final static String lockPairForUpdate = "select id from person where id in ($person1Id, $person2Id) order by id for update";
+    public final static String lockPairForNoKeyUpdate = "select id from person where id in ($person1Id, $person2Id) order by id for no key update";
+    public final static String lockPairAdvisory = "select pg_advisory_xact_lock(least($person1Id, $person2Id))";
 }
@@ -147,8 +147,10 @@ public class TigergraphDriver extends TestDriver<Integer, Map<String, String>, M
     }
 
     @Override
-    public void g0Init() {
-        runQuery("initKnow", ImmutableMap.<String, String>of());
+    public void g0Init(long numPairs) {
+        for (long i = 1; i <= numPairs; i++) {
+            runQuery("initKnowPair", ImmutableMap.of("person1Id", Long.toString(2*i-1), "person2Id", Long.toString(2*i)));
+        }
     }
 
     @Override
@@ -218,8 +220,10 @@ public class TigergraphDriver extends TestDriver<Integer, Map<String, String>, M
     // IMP
 
     @Override
-    public void impInit() {
-        runQuery("g1Init", ImmutableMap.<String, String>of("id","1","version","1"));
+    public void impInit(long numPersons) {
+        for (long i = 1; i <= numPersons; i++) {
+            runQuery("g1Init", ImmutableMap.<String, String>of("id", Long.toString(i), "version", "1"));
+        }
     }
 
     @Override
@@ -320,10 +324,10 @@ public class TigergraphDriver extends TestDriver<Integer, Map<String, String>, M
     // WS
 
     @Override
-    public void wsInit() {
-        for (int i = 1; i <= 10; i++) {
-            runQuery("wsInit", ImmutableMap.of("person1Id", Integer.toString(2*i-1), "person2Id", Integer.toString(2*i)));
-        }
+    public void wsInit(long numPairs) {
+        // one query per block of pairs instead of one request per pair, the blocks are loaded in parallel
+        forEachPairBlock(numPairs, 10_000, getParallelism(), (firstPair, lastPair) ->
+                runQuery("wsInitPairs", ImmutableMap.of("firstPair", Long.toString(firstPair), "lastPair", Long.toString(lastPair))));
     }
 
     @Override
@@ -342,9 +346,13 @@ public class TigergraphDriver extends TestDriver<Integer, Map<String, String>, M
 
     @Override
     public Map<String, Object> wsR(Map<String, Object> parameters) {
-        Map<String, Object> results = runQuery("wsR", toStringMap(parameters));
-        if (results.get("result") instanceof ArrayList) return ImmutableMap.of();
-        LinkedTreeMap<String, Object> record = (LinkedTreeMap<String, Object>) results.get("result");
-        return record;
+        Map<String, Object> results = runQuery("wsR", ImmutableMap.of(
+                "firstPair", Long.toString(firstPair(parameters)), "lastPair", Long.toString(lastPair(parameters))));
+        final Object result = results.get("result");
+        if (result instanceof List) {
+            final List<?> records = (List<?>) result;
+            return records.isEmpty() ? ImmutableMap.of() : (Map<String, Object>) records.get(0);
+        }
+        return (LinkedTreeMap<String, Object>) result;
     }
 }
@@ -0,0 +1,26 @@
+package transactions;
+
+// Why a transaction attempt failed, as classified by TestDriver.classifyAbort
+public enum AbortCause {
+
+    // the isolation level detected a conflict, e.g. Postgres SQLState 40001
+    SERIALIZATION_FAILURE,
+
+    // the database broke a lock cycle, e.g. Postgres SQLState 40P01 or Neo4j DeadlockDetected
+    DEADLOCK,
+
+    // a concurrent transaction committed a conflicting write first, e.g. Dgraph TxnConflictException
+    WRITE_CONFLICT,
+
+    // a lock could not be acquired because it is held by another transaction, e.g. JanusGraph PermanentLockingException
+    LOCK_CONFLICT,
+
+    // waiting for a lock took too long, e.g. Postgres SQLState 55P03 or Neo4j LockAcquisitionTimeout
+    LOCK_TIMEOUT,
+
+    // the statement or the client connection timed out
+    TIMEOUT,
+
+    OTHER
+
+}
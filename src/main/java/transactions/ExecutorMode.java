@@ -0,0 +1,45 @@
+package transactions;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// How the clients of a test are mapped to threads
+public enum ExecutorMode {
+
+    // a fixed pool of platform threads, clients beyond the pool size queue up
+    FIXED {
+        @Override
+        public ExecutorService newExecutorService(int threads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    },
+
+    // one virtual thread per submitted client, so all clients run concurrently (requires JDK 21)
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutorService(int threads) {
+            // looked up reflectively so that the sources still compile for Java 11
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException(String.format(
+                        "Virtual threads require JDK 21, running on %s (build with -Pjdk21Home=<path to JDK 21>)",
+                        System.getProperty("java.version")));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    public abstract ExecutorService newExecutorService(int threads);
+
+    // -Dacid.executor=fixed|virtual, defaults to the fixed pool
+    public static ExecutorMode fromSystemProperties() {
+        return valueOf(System.getProperty("acid.executor", "fixed").toUpperCase());
+    }
+
+    public static int threadsFromSystemProperties() {
+        return Integer.getInteger("acid.threads", 8);
+    }
+
+}
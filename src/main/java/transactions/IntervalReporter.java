@@ -0,0 +1,83 @@
+package transactions;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+// Prints the throughput of every interval of a long-running test and checks the invariant of the workload
+// while the transactions keep running, so that degradation and anomalies show up when they happen
+public class IntervalReporter implements AutoCloseable {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "interval-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final PrintStream out;
+    private final LongSupplier committed;
+    private final LongSupplier aborted;
+    private final BooleanSupplier invariant;
+    private final long start = System.nanoTime();
+
+    private long lastCommitted;
+    private long lastAborted;
+    private long lastTime = start;
+    private volatile int failedChecks;
+
+    private IntervalReporter(PrintStream out, LongSupplier committed, LongSupplier aborted, BooleanSupplier invariant) {
+        this.out = out;
+        this.committed = committed;
+        this.aborted = aborted;
+        this.invariant = invariant;
+    }
+
+    public static IntervalReporter start(Duration interval, LongSupplier committed, LongSupplier aborted, BooleanSupplier invariant) {
+        final IntervalReporter reporter = new IntervalReporter(System.out, committed, aborted, invariant);
+        reporter.scheduler.scheduleAtFixedRate(reporter::report, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        return reporter;
+    }
+
+    private void report() {
+        final long now = System.nanoTime();
+        final long committedNow = committed.getAsLong();
+        final long abortedNow = aborted.getAsLong();
+        final double seconds = (now - lastTime) / 1e9;
+
+        String check;
+        try {
+            if (invariant.getAsBoolean()) {
+                check = "ok";
+            } else {
+                check = "VIOLATED";
+                failedChecks++;
+            }
+        } catch (RuntimeException e) {
+            // the check transaction itself may abort under load, this is not an anomaly
+            check = "aborted (" + e.getClass().getSimpleName() + ")";
+        }
+
+        out.printf("[%7.1f s] committed: %8d (%9.1f tx/s), aborted: %6d (%6.2f%%), invariant: %s\n",
+                (now - start) / 1e9, committedNow, (committedNow - lastCommitted) / seconds,
+                abortedNow, 100.0 * (abortedNow - lastAborted) / Math.max(1, committedNow - lastCommitted + abortedNow - lastAborted),
+                check);
+        lastCommitted = committedNow;
+        lastAborted = abortedNow;
+        lastTime = now;
+    }
+
+    public int getFailedChecks() {
+        return failedChecks;
+    }
+
+    // stops reporting, waiting for a running check to finish
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+}
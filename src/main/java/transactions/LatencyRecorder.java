@@ -0,0 +1,171 @@
+package transactions;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Function;
+
+// Collects the latencies of the transactions of a test, separately for committed transactions and for each cause of aborts.
+// Every recording thread writes to its own histogram stripe, the stripes are merged when the report is made.
+public class LatencyRecorder {
+
+    public enum Outcome { COMMITTED, ABORTED }
+
+    static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String CSV_HEADER = "suite,test,outcome,count,mean_ms,p50_ms,p90_ms,p99_ms,p99.9_ms,max_ms,elapsed_ms";
+
+    // slot 0 holds the committed transactions, slot 1 + i the aborts of AbortCause i
+    private static final int SLOTS = 1 + AbortCause.values().length;
+
+    private final Function<Throwable, AbortCause> abortClassifier;
+    private final int stripeMask;
+    private final AtomicReferenceArray<LatencyHistogram> stripes;
+    private final LongAccumulator firstStart = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator lastEnd = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    public LatencyRecorder() {
+        this(t -> AbortCause.OTHER);
+    }
+
+    public LatencyRecorder(Function<Throwable, AbortCause> abortClassifier) {
+        this.abortClassifier = abortClassifier;
+        // enough stripes so that the threads of a fixed pool practically never share one
+        final int stripeCount = Integer.highestOneBit(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()) - 1) << 1;
+        this.stripeMask = stripeCount - 1;
+        this.stripes = new AtomicReferenceArray<>(SLOTS * stripeCount);
+    }
+
+    public void recordCommitted(long startNanos, long endNanos) {
+        record(0, startNanos, endNanos);
+    }
+
+    public void recordAborted(long startNanos, long endNanos, Throwable cause) {
+        recordAborted(startNanos, endNanos, abortClassifier.apply(cause));
+    }
+
+    public void recordAborted(long startNanos, long endNanos, AbortCause abortCause) {
+        record(1 + abortCause.ordinal(), startNanos, endNanos);
+    }
+
+    private void record(int slot, long startNanos, long endNanos) {
+        stripe(slot).record(endNanos - startNanos);
+        firstStart.accumulate(startNanos);
+        lastEnd.accumulate(endNanos);
+    }
+
+    private LatencyHistogram stripe(int slot) {
+        final int index = slot * (stripeMask + 1) + (int) (Thread.currentThread().getId() & stripeMask);
+        LatencyHistogram histogram = stripes.get(index);
+        if (histogram == null) {
+            stripes.compareAndSet(index, null, new LatencyHistogram());
+            histogram = stripes.get(index);
+        }
+        return histogram;
+    }
+
+    // merges the stripes of an outcome, call after all recording threads finished
+    public LatencyHistogram getHistogram(Outcome outcome) {
+        final LatencyHistogram merged = new LatencyHistogram();
+        if (outcome == Outcome.COMMITTED) {
+            mergeSlot(0, merged);
+        } else {
+            for (int slot = 1; slot < SLOTS; slot++) {
+                mergeSlot(slot, merged);
+            }
+        }
+        return merged;
+    }
+
+    public LatencyHistogram getHistogram(AbortCause abortCause) {
+        final LatencyHistogram merged = new LatencyHistogram();
+        mergeSlot(1 + abortCause.ordinal(), merged);
+        return merged;
+    }
+
+    private void mergeSlot(int slot, LatencyHistogram merged) {
+        for (int i = 0; i <= stripeMask; i++) {
+            final LatencyHistogram histogram = stripes.get(slot * (stripeMask + 1) + i);
+            if (histogram != null) merged.add(histogram);
+        }
+    }
+
+    // wall-clock time between the start of the first and the end of the last recorded transaction
+    public long getElapsedNanos() {
+        final long elapsed = lastEnd.get() - firstStart.get();
+        return elapsed > 0 ? elapsed : 0;
+    }
+
+    public boolean isEmpty() {
+        return firstStart.get() == Long.MAX_VALUE;
+    }
+
+    public void printReport(PrintStream out) {
+        final LatencyHistogram committed = getHistogram(Outcome.COMMITTED);
+        final LatencyHistogram aborted = getHistogram(Outcome.ABORTED);
+        out.printf("Throughput: %.1f tx/s\n", committed.getCount() / Math.max(1e-9, getElapsedNanos() / 1e9));
+        out.printf("Latency [ms]  %8s %9s %9s %9s %9s %9s %9s\n", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        printLatencies(out, "committed", committed);
+        printLatencies(out, "aborted", aborted);
+
+        if (aborted.getCount() == 0) return;
+        final long attempts = committed.getCount() + aborted.getCount();
+        out.printf("Aborts                  %8s %7s %9s %9s %9s\n", "count", "rate", "time [s]", "p50 [ms]", "p99 [ms]");
+        for (AbortCause abortCause : AbortCause.values()) {
+            final LatencyHistogram histogram = getHistogram(abortCause);
+            if (histogram.getCount() == 0) continue;
+            out.printf("  %-21s %8d %6.2f%% %9.3f %9.3f %9.3f\n",
+                    abortCause.name().toLowerCase(), histogram.getCount(), 100.0 * histogram.getCount() / attempts,
+                    histogram.getMean() * histogram.getCount() / 1e9,
+                    histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6);
+        }
+    }
+
+    private static void printLatencies(PrintStream out, String name, LatencyHistogram histogram) {
+        out.printf("  %-10s  %8d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f\n",
+                name, histogram.getCount(), histogram.getMean() / 1e6,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMaxValue() / 1e6);
+    }
+
+    // appends one row per outcome and per occurring abort cause to a CSV file, writing the header if the file is new
+    public void exportCsv(Path file, String suite, String test) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        if (!Files.exists(file)) {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            lines.add(CSV_HEADER);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            lines.add(csvLine(suite, test, outcome.name().toLowerCase(), getHistogram(outcome), getElapsedNanos()));
+        }
+        for (AbortCause abortCause : AbortCause.values()) {
+            final LatencyHistogram histogram = getHistogram(abortCause);
+            if (histogram.getCount() == 0) continue;
+            lines.add(csvLine(suite, test, "aborted:" + abortCause.name().toLowerCase(), histogram, getElapsedNanos()));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static String csvLine(String suite, String test, String outcome, LatencyHistogram histogram, long elapsedNanos) {
+        final StringBuilder line = new StringBuilder()
+                .append(suite).append(',').append(test).append(',').append(outcome)
+                .append(',').append(histogram.getCount())
+                .append(',').append(String.format(Locale.ROOT, "%.3f", histogram.getMean() / 1e6));
+        for (double percentile : PERCENTILES) {
+            line.append(',').append(String.format(Locale.ROOT, "%.3f", histogram.getValueAtPercentile(percentile) / 1e6));
+        }
+        line.append(',').append(String.format(Locale.ROOT, "%.3f", histogram.getMaxValue() / 1e6));
+        line.append(',').append(String.format(Locale.ROOT, "%.3f", elapsedNanos / 1e6));
+        return line.toString();
+    }
+
+}
@@ -0,0 +1,88 @@
+package transactions;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records the JFR events of virtual threads pinned to their carrier thread, e.g. while blocking inside synchronized driver code
+public class PinningMonitor implements AutoCloseable {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Recording recording = new Recording();
+
+    // counts and total pinned time, keyed by the innermost application frame
+    private final Map<String, long[]> pinnedSites = new HashMap<>();
+    private long pinnedEvents;
+    private long pinnedNanos;
+
+    public PinningMonitor(Duration threshold) {
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+    }
+
+    public static PinningMonitor start() {
+        final PinningMonitor monitor = new PinningMonitor(Duration.ofMillis(Long.getLong("acid.pinningThresholdMs", 0)));
+        monitor.recording.start();
+        return monitor;
+    }
+
+    public void stop() throws IOException {
+        recording.stop();
+        final Path dump = Files.createTempFile("acid-pinning", ".jfr");
+        try {
+            recording.dump(dump);
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                if (!event.getEventType().getName().equals(PINNED_EVENT)) continue;
+                final long nanos = event.getDuration().toNanos();
+                final long[] site = pinnedSites.computeIfAbsent(pinnedSite(event.getStackTrace()), s -> new long[2]);
+                site[0]++;
+                site[1] += nanos;
+                pinnedEvents++;
+                pinnedNanos += nanos;
+            }
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    private static String pinnedSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "(no stack trace)";
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            final String type = frame.getMethod().getType().getName();
+            if (type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) continue;
+            return String.format("%s.%s:%d", type, frame.getMethod().getName(), frame.getLineNumber());
+        }
+        return "(JDK internal)";
+    }
+
+    public long getPinnedEvents() {
+        return pinnedEvents;
+    }
+
+    public void printReport(PrintStream out) {
+        out.printf("Pinned virtual threads: %d events, %.1f ms total\n", pinnedEvents, pinnedNanos / 1e6);
+        final List<Map.Entry<String, long[]>> sites = new ArrayList<>(pinnedSites.entrySet());
+        sites.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        for (Map.Entry<String, long[]> site : sites) {
+            out.printf("  %8d %10.1f ms  %s\n", site.getValue()[0], site.getValue()[1] / 1e6, site.getKey());
+        }
+    }
+
+    @Override
+    public void close() {
+        recording.close();
+    }
+
+}
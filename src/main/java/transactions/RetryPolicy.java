@@ -0,0 +1,65 @@
+package transactions;
+
+import benchmark.BenchmarkOptions;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// How often and after which pause a transaction is re-executed after an abort, see RetryingTestDriver.
+// Only aborts after which the database rolled the transaction back are retried, so re-executing it with the same
+// parameters cannot apply its writes twice. The backoff grows exponentially from the base backoff up to the max
+// backoff, the pause is drawn uniformly from zero to that bound (full jitter), so that the retries of conflicting
+// transactions spread out instead of colliding again.
+public class RetryPolicy {
+
+    public static final Set<AbortCause> RETRYABLE = EnumSet.of(
+            AbortCause.SERIALIZATION_FAILURE, AbortCause.DEADLOCK, AbortCause.WRITE_CONFLICT, AbortCause.LOCK_CONFLICT);
+
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    public RetryPolicy(int maxAttempts, Duration baseBackoff, Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("The max attempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = Math.max(baseBackoffNanos, maxBackoff.toNanos());
+    }
+
+    // -Dacid.retry.maxAttempts=<n> (default 1, i.e. no retries), -Dacid.retry.backoff=<time> (default 5ms),
+    // -Dacid.retry.maxBackoff=<time> (default 1s)
+    public static RetryPolicy fromSystemProperties() {
+        return new RetryPolicy(
+                Integer.getInteger("acid.retry.maxAttempts", 1),
+                BenchmarkOptions.parseDuration(System.getProperty("acid.retry.backoff", "5ms")),
+                BenchmarkOptions.parseDuration(System.getProperty("acid.retry.maxBackoff", "1s")));
+    }
+
+    public boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // attempt is the number of the attempt that just failed, starting from 1
+    public boolean shouldRetry(AbortCause abortCause, int attempt) {
+        return attempt < maxAttempts && RETRYABLE.contains(abortCause);
+    }
+
+    public long backoffNanos(int attempt) {
+        final long bound = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempt - 1, 30));
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("max attempts %d, backoff %.1f..%.1f ms", maxAttempts, baseBackoffNanos / 1e6, maxBackoffNanos / 1e6);
+    }
+
+}
@@ -0,0 +1,362 @@
+package transactions;
+
+import driver.IsolationLevel;
+import driver.TestDriver;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Wraps a driver and re-executes every transaction that was aborted with a retryable cause, following a RetryPolicy,
+// the way an application would. Most transaction methods of the drivers open, run and commit a single transaction, so
+// an attempt is re-executed with the same parameters. otvW commits a series of transactions, re-executing it after an
+// abort would repeat the ones that already committed, so it is not retried. The latency recorded around a call of the wrapper is the latency
+// of the business operation including its retries and backoffs, and its commits make up the goodput.
+public class RetryingTestDriver<TestTransaction, QueryParameters, QueryResult> extends TestDriver<TestTransaction, QueryParameters, QueryResult> {
+
+    private final TestDriver<TestTransaction, QueryParameters, QueryResult> delegate;
+    private final RetryPolicy retryPolicy;
+
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder backoffNanos = new LongAdder();
+    private final LongAdder[] retries = new LongAdder[AbortCause.values().length];
+    // latencies of the operations that committed after at least one retry
+    private final LatencyHistogram retriedLatencies = new LatencyHistogram();
+
+    public RetryingTestDriver(TestDriver<TestTransaction, QueryParameters, QueryResult> delegate, RetryPolicy retryPolicy) {
+        this.delegate = delegate;
+        this.retryPolicy = retryPolicy;
+        for (int i = 0; i < retries.length; i++) {
+            retries[i] = new LongAdder();
+        }
+    }
+
+    public static <TT, QP, QR> RetryingTestDriver<TT, QP, QR> wrap(TestDriver<TT, QP, QR> delegate, RetryPolicy retryPolicy) {
+        return new RetryingTestDriver<>(delegate, retryPolicy);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    private <R> R retry(Supplier<R> transaction) {
+        final long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                final R result = transaction.get();
+                committed.increment();
+                if (attempt > 1) {
+                    retriedLatencies.record(System.nanoTime() - start);
+                }
+                return result;
+            } catch (RuntimeException | Error e) {
+                final AbortCause abortCause = delegate.classifyAbort(e);
+                if (!retryPolicy.shouldRetry(abortCause, attempt)) {
+                    failed.increment();
+                    throw e;
+                }
+                retries[abortCause.ordinal()].increment();
+                final long backoff = retryPolicy.backoffNanos(attempt);
+                backoffNanos.add(backoff);
+                sleepNanos(backoff);
+            }
+        }
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getRetries() {
+        long sum = 0;
+        for (LongAdder r : retries) {
+            sum += r.sum();
+        }
+        return sum;
+    }
+
+    // goodput counts the committed operations, the attempt rate every execution of a transaction including the aborted ones
+    public void printReport(PrintStream out, long elapsedNanos) {
+        final double seconds = Math.max(1e-9, elapsedNanos / 1e9);
+        final long numCommitted = committed.sum();
+        out.printf("Retries: %s\n", retryPolicy);
+        out.printf("  goodput: %.1f ops/s, attempts: %.1f /s, attempts per commit: %.3f, failed operations: %d, backoff: %.3f s\n",
+                numCommitted / seconds, attempts.sum() / seconds, (double) attempts.sum() / Math.max(1, numCommitted),
+                failed.sum(), backoffNanos.sum() / 1e9);
+        if (retriedLatencies.getCount() > 0) {
+            out.printf("  retried ops [ms]  %8s %9s %9s %9s %9s\n", "count", "mean", "p50", "p99", "max");
+            out.printf("                    %8d %9.3f %9.3f %9.3f %9.3f\n",
+                    retriedLatencies.getCount(), retriedLatencies.getMean() / 1e6, retriedLatencies.getValueAtPercentile(50) / 1e6,
+                    retriedLatencies.getValueAtPercentile(99) / 1e6, retriedLatencies.getMaxValue() / 1e6);
+        }
+        for (AbortCause abortCause : AbortCause.values()) {
+            if (retries[abortCause.ordinal()].sum() == 0) continue;
+            out.printf("  retries after %-21s %8d\n", abortCause.name().toLowerCase(), retries[abortCause.ordinal()].sum());
+        }
+    }
+
+    @Override
+    public List<IsolationLevel> getSupportedIsolationLevels() {
+        return delegate.getSupportedIsolationLevels();
+    }
+
+    @Override
+    public IsolationLevel getIsolationLevel() {
+        return delegate.getIsolationLevel();
+    }
+
+    @Override
+    public void setIsolationLevel(IsolationLevel isolationLevel) {
+        delegate.setIsolationLevel(isolationLevel);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        final Map<String, Object> statistics = new LinkedHashMap<>(delegate.getStatistics());
+        statistics.put("committedOperations", committed.sum());
+        statistics.put("failedOperations", failed.sum());
+        statistics.put("attempts", attempts.sum());
+        statistics.put("retries", getRetries());
+        return statistics;
+    }
+
+    @Override
+    public TestTransaction startTransaction() throws Exception {
+        return delegate.startTransaction();
+    }
+
+    @Override
+    public void commitTransaction(TestTransaction tt) throws Exception {
+        delegate.commitTransaction(tt);
+    }
+
+    @Override
+    public void abortTransaction(TestTransaction tt) throws Exception {
+        delegate.abortTransaction(tt);
+    }
+
+    @Override
+    public QueryResult runQuery(TestTransaction tt, String querySpecification, QueryParameters queryParameters) throws Exception {
+        return delegate.runQuery(tt, querySpecification, queryParameters);
+    }
+
+    @Override
+    public AbortCause classifyAbort(Throwable throwable) {
+        return delegate.classifyAbort(throwable);
+    }
+
+    @Override
+    public void nukeDatabase() {
+        delegate.nukeDatabase();
+    }
+
+    // Atomicity tests
+
+    @Override
+    public void atomicityInit() {
+        delegate.atomicityInit();
+    }
+
+    @Override
+    public void atomicityC(Map<String, Object> parameters) {
+        retry(() -> {
+            delegate.atomicityC(parameters);
+            return null;
+        });
+    }
+
+    @Override
+    public void atomicityRB(Map<String, Object> parameters) {
+        retry(() -> {
+            delegate.atomicityRB(parameters);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Object> atomicityCheck() {
+        return retry(delegate::atomicityCheck);
+    }
+
+    // G0 Dirty Write
+
+    @Override
+    public void g0Init(long numPairs) {
+        delegate.g0Init(numPairs);
+    }
+
+    @Override
+    public Map<String, Object> g0(Map<String, Object> parameters) {
+        return retry(() -> delegate.g0(parameters));
+    }
+
+    @Override
+    public Map<String, Object> g0check(Map<String, Object> parameters) {
+        return retry(() -> delegate.g0check(parameters));
+    }
+
+    // G1a Intermediate Reads
+
+    @Override
+    public void g1aInit() {
+        delegate.g1aInit();
+    }
+
+    @Override
+    public Map<String, Object> g1aW(Map<String, Object> parameters) {
+        return retry(() -> delegate.g1aW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> g1aR(Map<String, Object> parameters) {
+        return retry(() -> delegate.g1aR(parameters));
+    }
+
+    // G1b Intermediate Reads
+
+    @Override
+    public void g1bInit() {
+        delegate.g1bInit();
+    }
+
+    @Override
+    public Map<String, Object> g1bW(Map<String, Object> parameters) {
+        return retry(() -> delegate.g1bW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> g1bR(Map<String, Object> parameters) {
+        return retry(() -> delegate.g1bR(parameters));
+    }
+
+    // G1c Circular Information Flow
+
+    @Override
+    public void g1cInit() {
+        delegate.g1cInit();
+    }
+
+    @Override
+    public Map<String, Object> g1c(Map<String, Object> parameters) {
+        return retry(() -> delegate.g1c(parameters));
+    }
+
+    // IMP
+
+    @Override
+    public void impInit(long numPersons) {
+        delegate.impInit(numPersons);
+    }
+
+    @Override
+    public Map<String, Object> impW(Map<String, Object> parameters) {
+        return retry(() -> delegate.impW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> impR(Map<String, Object> parameters) {
+        return retry(() -> delegate.impR(parameters));
+    }
+
+    // PMP
+
+    @Override
+    public void pmpInit() {
+        delegate.pmpInit();
+    }
+
+    @Override
+    public Map<String, Object> pmpW(Map<String, Object> parameters) {
+        return retry(() -> delegate.pmpW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> pmpR(Map<String, Object> parameters) {
+        return retry(() -> delegate.pmpR(parameters));
+    }
+
+    // OTV
+
+    @Override
+    public void otvInit() {
+        delegate.otvInit();
+    }
+
+    @Override
+    public Map<String, Object> otvW(Map<String, Object> parameters) {
+        return delegate.otvW(parameters);
+    }
+
+    @Override
+    public Map<String, Object> otvR(Map<String, Object> parameters) {
+        return retry(() -> delegate.otvR(parameters));
+    }
+
+    // FR
+
+    @Override
+    public void frInit() {
+        delegate.frInit();
+    }
+
+    @Override
+    public Map<String, Object> frW(Map<String, Object> parameters) {
+        return retry(() -> delegate.frW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> frR(Map<String, Object> parameters) {
+        return retry(() -> delegate.frR(parameters));
+    }
+
+    // LU
+
+    @Override
+    public void luInit() {
+        delegate.luInit();
+    }
+
+    @Override
+    public Map<String, Object> luW(Map<String, Object> parameters) {
+        return retry(() -> delegate.luW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> luR(Map<String, Object> parameters) {
+        return retry(() -> delegate.luR(parameters));
+    }
+
+    // WS
+
+    @Override
+    public void wsInit(long numPairs) {
+        delegate.wsInit(numPairs);
+    }
+
+    @Override
+    public Map<String, Object> wsW(Map<String, Object> parameters) {
+        return retry(() -> delegate.wsW(parameters));
+    }
+
+    @Override
+    public Map<String, Object> wsR(Map<String, Object> parameters) {
+        return retry(() -> delegate.wsR(parameters));
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+}
@@ -5,19 +5,48 @@ import java.util.function.Function;
 
 public class TransactionThread<T, R> implements Callable<R> {
 
+    // the latency of a transaction is measured from when call() is invoked, unless an intended start time is given
+    public static final long START_WHEN_CALLED = Long.MIN_VALUE;
+
     final long transactionId;
     final Function<T, R> f;
     final T t;
+    final LatencyRecorder latencyRecorder;
+    final long intendedStartNanos;
 
     public TransactionThread(long transactionId, Function<T, R> f, T t) {
+        this(transactionId, f, t, null);
+    }
+
+    public TransactionThread(long transactionId, Function<T, R> f, T t, LatencyRecorder latencyRecorder) {
+        this(transactionId, f, t, latencyRecorder, START_WHEN_CALLED);
+    }
+
+    // intendedStartNanos is the System.nanoTime() at which an open-loop schedule meant to start the transaction,
+    // so that the time spent waiting for a free client counts towards its latency
+    public TransactionThread(long transactionId, Function<T, R> f, T t, LatencyRecorder latencyRecorder, long intendedStartNanos) {
         this.transactionId = transactionId;
         this.f = f;
         this.t = t;
+        this.latencyRecorder = latencyRecorder;
+        this.intendedStartNanos = intendedStartNanos;
     }
 
     @Override
     public R call() throws Exception {
-        return f.apply(t);
+        if (latencyRecorder == null) {
+            return f.apply(t);
+        }
+
+        final long start = intendedStartNanos == START_WHEN_CALLED ? System.nanoTime() : intendedStartNanos;
+        try {
+            final R r = f.apply(t);
+            latencyRecorder.recordCommitted(start, System.nanoTime());
+            return r;
+        } catch (RuntimeException | Error e) {
+            latencyRecorder.recordAborted(start, System.nanoTime(), e);
+            throw e;
+        }
     }
 
     public long getTransactionId() {
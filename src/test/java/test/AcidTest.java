@@ -1,43 +1,86 @@
 package test;
 
+import benchmark.AcidBenchmarkRunner;
+import benchmark.BenchmarkOptions;
+import benchmark.KeyChooser;
+import benchmark.Workload;
+import checker.G0Checker;
+import checker.G1cOnlineChecker;
+import checker.WriteSkewChecker;
 import com.google.common.collect.ImmutableMap;
 import driver.TestDriver;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TestName;
+import transactions.ExecutorMode;
+import transactions.LatencyRecorder;
+import transactions.PinningMonitor;
+import transactions.RetryPolicy;
+import transactions.RetryingTestDriver;
 import transactions.TransactionThread;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public abstract class AcidTest<TTestDriver extends TestDriver> {
 
     protected TTestDriver testDriver;
-    protected ExecutorService executorService = Executors.newFixedThreadPool(8);
-    private boolean printStackTrace = false;
+    // runs the transactions of the tests, the test driver or with -Dacid.retry.maxAttempts=<n> a RetryingTestDriver around it
+    protected TestDriver<?, ?, ?> workloadDriver;
+    protected ExecutorMode executorMode = ExecutorMode.fromSystemProperties();
+    protected ExecutorService executorService = executorMode.newExecutorService(ExecutorMode.threadsFromSystemProperties());
+    protected LatencyRecorder latencyRecorder;
+    private PinningMonitor pinningMonitor;
+    private boolean printStackTrace = Boolean.getBoolean("acid.printStackTrace");
+    // with -Dacid.soakDuration=<time>, luTest, g0Test and g1cTest run their writers for that long with the benchmark runner
+    private Duration soakDuration = System.getProperty("acid.soakDuration") == null ? null : BenchmarkOptions.parseDuration(System.getProperty("acid.soakDuration"));
+    // the key space of the soak runs, as for the key choosers of the tests
+    private static final Map<String, String> SOAK_KEY_OPTIONS = ImmutableMap.of("acid.keys", "keys",
+            "acid.distribution", "distribution", "acid.zipfTheta", "theta", "acid.hotFraction", "hot-fraction", "acid.hotProbability", "hot-probability");
+    // the pause before and after the reset of the database, e.g. -Dacid.resetPause=0s with -Dacid.postgres.reset=template
+    private Duration resetPause = BenchmarkOptions.parseDuration(System.getProperty("acid.resetPause", "3s"));
+    private long resetNanos;
+    private long testStart;
+
+    @Rule
+    public TestName testName = new TestName();
 
     public AcidTest(TTestDriver testDriver) {
         this.testDriver = testDriver;
+        final RetryPolicy retryPolicy = RetryPolicy.fromSystemProperties();
+        final TestDriver<?, ?, ?> driver = testDriver;
+        this.workloadDriver = retryPolicy.isEnabled() ? RetryingTestDriver.wrap(driver, retryPolicy) : driver;
+        this.latencyRecorder = new LatencyRecorder(testDriver::classifyAbort);
     }
 
     @Before
     public void initialize() {
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        pauseForReset();
+        final long resetStart = System.nanoTime();
         testDriver.nukeDatabase();
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        resetNanos = System.nanoTime() - resetStart;
+        pauseForReset();
+        testStart = System.nanoTime();
 
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            pinningMonitor = PinningMonitor.start();
+        }
     }
 
     @Test
@@ -66,11 +109,15 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
     @Test
     public void luTest() throws Exception {
+        if (soakDuration != null) {
+            soak(Workload.LU);
+            return;
+        }
         testDriver.luInit();
         final int nTransactions = 200;
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
         for (int i = 0; i < nTransactions; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::luW, ImmutableMap.of("person1Id", 1L,"person2Id",(i+2L))));
+            clients.add(new TransactionThread<>(i, workloadDriver::luW, ImmutableMap.of("person1Id", 1L,"person2Id",(i+2L)), latencyRecorder));
         }
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
         int aborted = 0;
@@ -97,12 +144,19 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
     @Test
     public void g0Test() throws Exception {
-        testDriver.g0Init();
+        if (soakDuration != null) {
+            soak(Workload.G0);
+            return;
+        }
+        final KeyChooser pairs = KeyChooser.fromSystemProperties(1);
+        testDriver.g0Init(pairs.getKeyCount());
         final int wc = 200;
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
+        final Random random = new Random();
         for (int i = 1; i <= wc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::g0, ImmutableMap.of("person1Id", 1L, "person2Id", 2L, "transactionId", i)));
+            final long pair = pairs.next(random);
+            clients.add(new TransactionThread<>(i, workloadDriver::g0, ImmutableMap.of("person1Id", 2 * pair - 1, "person2Id", 2 * pair, "transactionId", i), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -118,29 +172,13 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
         System.out.printf("Number of aborted transactions: %d\n", aborted);
 
 
-        Map<String, Object> results = testDriver.g0check(ImmutableMap.of("person1Id", 1L, "person2Id", 2L));
-        if (results.containsKey("p1VersionHistory")) {
-            final List<Long> p1VersionHistory = new ArrayList<>((List<Long>) results.get("p1VersionHistory"));
-            final List<Long> kVersionHistory  = new ArrayList<>((List<Long>) results.get("kVersionHistory" ));
-            final List<Long> p2VersionHistory = new ArrayList<>((List<Long>) results.get("p2VersionHistory"));
-
-            p1VersionHistory.retainAll(kVersionHistory);
-            p1VersionHistory.retainAll(p2VersionHistory);
-
-            kVersionHistory.retainAll(p1VersionHistory);
-            kVersionHistory.retainAll(p2VersionHistory);
-
-            p2VersionHistory.retainAll(p1VersionHistory);
-            p2VersionHistory.retainAll(kVersionHistory);
-
-            System.out.printf("G0:    %s %s %s %5b %5b %5b\n",
-                    p1VersionHistory, kVersionHistory, p2VersionHistory,
-                    p1VersionHistory.equals(kVersionHistory),
-                    p1VersionHistory.equals(p2VersionHistory),
-                    kVersionHistory.equals(p1VersionHistory));
-            Assert.assertEquals(p1VersionHistory, kVersionHistory);
-            Assert.assertEquals(p1VersionHistory, p2VersionHistory);
-            Assert.assertEquals(kVersionHistory, p1VersionHistory);
+        for (long pair = 1; pair <= pairs.getKeyCount(); pair++) {
+            Map<String, Object> results = testDriver.g0check(ImmutableMap.of("person1Id", 2 * pair - 1, "person2Id", 2 * pair));
+            if (results.containsKey("p1VersionHistory")) {
+                final G0Checker.Result result = G0Checker.check(results);
+                System.out.printf("G0:    %s %5b\n", result, result.isConsistent());
+                Assert.assertTrue(result.toString(), result.isConsistent());
+            }
         }
     }
 
@@ -152,10 +190,10 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
         for (int i = 0; i < wc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::g1aW, ImmutableMap.of("personId", 1L, "sleepTime", 250L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::g1aW, ImmutableMap.of("personId", 1L, "sleepTime", 250L), latencyRecorder));
         }
         for (int i = 0; i < rc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::g1aR, ImmutableMap.of("personId", 1L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::g1aR, ImmutableMap.of("personId", 1L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -186,10 +224,10 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
         for (int i = 0; i < wc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::g1bW, ImmutableMap.of("personId", 1L, "even", 0L, "odd", 1L, "sleepTime", 1L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::g1bW, ImmutableMap.of("personId", 1L, "even", 0L, "odd", 1L, "sleepTime", 1L), latencyRecorder));
         }
         for (int i = 0; i < rc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::g1bR, ImmutableMap.of("personId", 1L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::g1bR, ImmutableMap.of("personId", 1L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -206,66 +244,68 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
     @Test
     public void g1cTest() throws Exception {
+        if (soakDuration != null) {
+            soak(Workload.G1C);
+            return;
+        }
         testDriver.g1cInit();
         final int c = 100;
+        final int window = 1024;
 
-        List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
+        // results are checked as they complete, with at most window transactions in flight
+        final G1cOnlineChecker checker = new G1cOnlineChecker(4 * window);
+        final CompletionService<Map<String, Object>> completionService = new ExecutorCompletionService<>(executorService);
+        final Map<Future<Map<String, Object>>, Long> inFlight = new HashMap<>();
         final Random random = new Random();
-        for (long i = 1; i <= c; i++) {
-            final boolean order = random.nextBoolean();
-            long person1Id = order ? 1L : 2L;
-            long person2Id = order ? 2L : 1L;
-            clients.add(new TransactionThread<>(i, testDriver::g1c, ImmutableMap.of("person1Id", person1Id, "person2Id", person2Id, "transactionId", i)));
-        }
-
-        final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
-        List<Map<String, Object>> resultss = new ArrayList<>();
+        long nextTransactionId = 1;
+        while (true) {
+            final boolean more = nextTransactionId <= c;
+            if (more && inFlight.size() < window) {
+                final long i = nextTransactionId++;
+                final boolean order = random.nextBoolean();
+                long person1Id = order ? 1L : 2L;
+                long person2Id = order ? 2L : 1L;
+                inFlight.put(completionService.submit(new TransactionThread<>(i, workloadDriver::g1c, ImmutableMap.of("person1Id", person1Id, "person2Id", person2Id, "transactionId", i), latencyRecorder)), i);
+                continue;
+            }
+            if (inFlight.isEmpty()) break;
 
-        // ugly hack: we put NULLs in the list
-        // TODO: use List<Optional<Map<String, Object>>>
-        int aborted = 0;
-        for (Future<Map<String, Object>> future : futures) {
+            final Future<Map<String, Object>> future = completionService.take();
+            final long transactionId = inFlight.remove(future);
             try {
-                resultss.add(future.get());
-            } catch (Exception e) {
-                resultss.add(null);
-                aborted++;
+                final Map<String, Object> results = future.get();
+                if (results.containsKey("person2Version")) {
+                    checker.committed(transactionId, (long) results.get("person2Version"));
+                } else {
+                    checker.aborted(transactionId);
+                }
+            } catch (ExecutionException e) {
+                checker.aborted(transactionId);
                 if(printStackTrace)e.printStackTrace();
             }
         }
-        System.out.printf("Number of aborted transactions: %d\n", aborted);
-
-        // not that transactions are indexed from 1
-        // but lists are indexed from 0
-        for (int i = 1; i <= c; i++) {
-            Map<String, Object> results1 = resultss.get(i-1);
-            if (results1 == null) continue;
-
-            final int person2Version1 = ((Long) results1.get("person2Version")).intValue();
-            if (person2Version1 == 0L) continue;
-
-            final Map<String, Object> results2 = resultss.get(person2Version1-1);
-            Assert.assertNotNull(String.format("Transaction %d read data by aborted transaction %d", i, person2Version1), results2);
-
-            final int person2Version2 = ((Long) results2.get("person2Version")).intValue();
+        System.out.printf("Number of aborted transactions: %d\n", checker.getAborted());
 
-            System.out.printf("G1c:   %4d %4d %4d %5b\n", i, person2Version1, person2Version2, i != person2Version2);
-            Assert.assertNotEquals(i, person2Version2);
-        }
+        System.out.printf("G1c:   %4d %4d %4d %5b\n", checker.getCommitted(), checker.getCycles(), checker.getAbortedReads(), checker.isConsistent());
+        Assert.assertTrue(checker.getViolations().toString(), checker.isConsistent());
+        // all transactions completed, so every version that was read belongs to a committed or aborted transaction
+        Assert.assertEquals("reads of unresolved versions", 0, checker.getPending());
     }
 
     @Test
     public void impTest() throws Exception {
-        testDriver.impInit();
+        final KeyChooser persons = KeyChooser.fromSystemProperties(1);
+        testDriver.impInit(persons.getKeyCount());
         final int wc = 10;
         final int rc = 10;
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
+        final Random random = new Random();
         for (int i = 0; i < wc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::impW, ImmutableMap.of("personId", 1L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::impW, ImmutableMap.of("personId", persons.next(random)), latencyRecorder));
         }
         for (int i = 0; i < rc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::impR, ImmutableMap.of("personId", 1L, "sleepTime", 250L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::impR, ImmutableMap.of("personId", persons.next(random), "sleepTime", 250L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -296,10 +336,10 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
         for (int i = 0; i < wc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::pmpW, ImmutableMap.of("personId", 1L, "postId", 1L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::pmpW, ImmutableMap.of("personId", 1L, "postId", 1L), latencyRecorder));
         }
         for (int i = 0; i < rc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::pmpR, ImmutableMap.of("personId", 1L, "postId", 1L, "sleepTime", 250L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::pmpR, ImmutableMap.of("personId", 1L, "postId", 1L, "sleepTime", 250L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -322,10 +362,10 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
         for (int i = 0; i < wc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::frW, ImmutableMap.of("personId", 1L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::frW, ImmutableMap.of("personId", 1L), latencyRecorder));
         }
         for (int i = 0; i < rc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::frR, ImmutableMap.of("personId", 1L, "sleepTime", 250L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::frR, ImmutableMap.of("personId", 1L, "sleepTime", 250L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -354,10 +394,10 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
         final int rc = 50;
 
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
-        clients.add(new TransactionThread<>(0, testDriver::otvW, ImmutableMap.of("cycleSize", 4)));
+        clients.add(new TransactionThread<>(0, workloadDriver::otvW, ImmutableMap.of("cycleSize", 4), latencyRecorder));
         Random random = new Random();
         for (int i = 0; i < rc; i++) {
-            clients.add(new TransactionThread<>(i, testDriver::otvR, ImmutableMap.of("personId", random.nextInt(4)+1, "sleepTime", 250L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::otvR, ImmutableMap.of("personId", random.nextInt(4)+1, "sleepTime", 250L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -385,19 +425,21 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
 
     @Test
     public void wsTest() throws Exception {
-        testDriver.wsInit();
-        final int wc = 50;
+        final KeyChooser personPairs = KeyChooser.fromSystemProperties(10);
+        final long initStart = System.nanoTime();
+        testDriver.wsInit(personPairs.getKeyCount());
+        System.out.printf("Initialized %d person pairs in %d ms\n", personPairs.getKeyCount(), (System.nanoTime() - initStart) / 1_000_000);
+        final int wc = Integer.getInteger("acid.wsWriters", 50);
 
-        int numPersonPairs = 10;
         List<TransactionThread<Map<String, Object>, Map<String, Object>>> clients = new ArrayList<>();
         Random random = new Random();
 
         for (int i = 0; i < wc; i++) {
-            // person1 indices range from 1 to 2*numPersonPairs+1
-            long person1Id = random.nextInt(numPersonPairs)*2+1;
+            // person1 indices range from 1 to 2*numPersonPairs-1
+            long person1Id = personPairs.next(random)*2-1;
             long person2Id = person1Id + 1;
-            clients.add(new TransactionThread<>(i, testDriver::wsW,
-                    ImmutableMap.of("person1Id", person1Id, "person2Id", person2Id, "sleepTime", 250L)));
+            clients.add(new TransactionThread<>(i, workloadDriver::wsW,
+                    ImmutableMap.of("person1Id", person1Id, "person2Id", person2Id, "sleepTime", 250L), latencyRecorder));
         }
 
         final List<Future<Map<String, Object>>> futures = executorService.invokeAll(clients);
@@ -412,17 +454,84 @@ public abstract class AcidTest<TTestDriver extends TestDriver> {
         }
         System.out.printf("Number of aborted transactions: %d\n", aborted);
 
-        Map<String, Object> results = testDriver.wsR(ImmutableMap.of());
-        System.out.println(results);
+        final WriteSkewChecker checker = WriteSkewChecker.fromSystemProperties();
+        final List<Map<String, Object>> violations = checker.check(testDriver, personPairs.getKeyCount());
+        System.out.printf("Checked %d person pairs (%s) in %d ms\n", personPairs.getKeyCount(), checker, checker.getElapsedNanos() / 1_000_000);
+        System.out.println(violations);
+
+        Assert.assertTrue(violations.isEmpty());
+    }
+
+    // runs the writers of a workload with the benchmark runner for the soak duration, checking its invariant at every
+    // soak interval, the runner resets the database and initializes the workload itself
+    private void soak(Workload workload) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        options.put("workload", workload.name());
+        options.put("executor", executorMode.name());
+        options.put("threads", String.valueOf(ExecutorMode.threadsFromSystemProperties()));
+        options.put("duration", System.getProperty("acid.soakDuration"));
+        options.put("check-interval", System.getProperty("acid.soakInterval", "30s"));
+        options.put("read-ratio", "0");
+        SOAK_KEY_OPTIONS.forEach((property, option) -> {
+            if (System.getProperty(property) != null) options.put(option, System.getProperty(property));
+        });
+        if (printStackTrace) options.put("print-stack-trace", "true");
+
+        final boolean pass = new AcidBenchmarkRunner(workloadDriver, new BenchmarkOptions(options), latencyRecorder).run();
+        Assert.assertTrue(workload + " soak run failed", pass);
+    }
+
+    // appends one suite,test,name,value row per driver statistic, e.g. for the lock wait columns of IsolationMatrix
+    private void exportStatistics(Path file, Map<String, Object> statistics) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        if (!Files.exists(file)) {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            lines.add("suite,test,name,value");
+        }
+        for (Map.Entry<String, Object> statistic : statistics.entrySet()) {
+            lines.add(String.join(",", getClass().getSimpleName(), testName.getMethodName(), statistic.getKey(), String.valueOf(statistic.getValue())));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
 
-        Assert.assertTrue(results.isEmpty());
+    private void pauseForReset() {
+        try {
+            Thread.sleep(resetPause.toMillis());
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
     }
 
     @After
-    public void cleanup() throws InterruptedException {
+    public void cleanup() throws Exception {
+        // the test time includes the init of the test
+        System.out.printf("Reset: %.1f ms, test: %.1f ms\n", resetNanos / 1e6, (System.nanoTime() - testStart) / 1e6);
 //        System.out.println(Thread.currentThread().getName() + ": Shutting down executor service...");
         executorService.shutdown();
         executorService.awaitTermination(5, TimeUnit.HOURS);
+
+        if (!latencyRecorder.isEmpty()) {
+            latencyRecorder.printReport(System.out);
+            latencyRecorder.exportCsv(Paths.get(System.getProperty("acid.resultsDir", "build/acid-results"), "latency.csv"),
+                    getClass().getSimpleName(), testName.getMethodName());
+        }
+
+        if (pinningMonitor != null) {
+            pinningMonitor.stop();
+            pinningMonitor.printReport(System.out);
+            pinningMonitor.close();
+        }
+
+        if (workloadDriver instanceof RetryingTestDriver) {
+            ((RetryingTestDriver<?, ?, ?>) workloadDriver).printReport(System.out, latencyRecorder.getElapsedNanos());
+        }
+        final Map<String, Object> statistics = workloadDriver.getStatistics();
+        if (!statistics.isEmpty()) {
+            System.out.printf("Driver: %s\n", statistics);
+            exportStatistics(Paths.get(System.getProperty("acid.resultsDir", "build/acid-results"), "statistics.csv"), statistics);
+        }
+        // e.g. closes the idle connections of the Postgres pool, every test creates its own driver
+        testDriver.close();
     }
 
 }
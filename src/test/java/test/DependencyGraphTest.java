@@ -0,0 +1,81 @@
+package test;
+
+import checker.DependencyGraph;
+import checker.DependencyGraph.AnomalyType;
+import checker.DependencyGraph.EdgeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class DependencyGraphTest {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    @Test
+    public void serializableHistory() {
+        // T0 writes x, T1 reads x from T0 and writes y, T2 reads y from T1
+        final DependencyGraph graph = DependencyGraph.builder(3)
+                .addVersionOrder(X, 0)
+                .addVersionOrder(Y, 1)
+                .addRead(1, X, 0)
+                .addRead(2, Y, 1)
+                .build();
+        Assert.assertTrue(graph.findAnomalies().isEmpty());
+    }
+
+    @Test
+    public void g0() {
+        // T0 and T1 both write x and y, in opposite orders
+        final List<DependencyGraph.Anomaly> anomalies = DependencyGraph.builder(2)
+                .addVersionOrder(X, 0, 1)
+                .addVersionOrder(Y, 1, 0)
+                .build().findAnomalies();
+        Assert.assertEquals(1, anomalies.size());
+        Assert.assertEquals(AnomalyType.G0, anomalies.get(0).getType());
+    }
+
+    @Test
+    public void g1c() {
+        // each of T1, T2, T3 reads the version written by the next one, a cycle of length 3
+        final List<DependencyGraph.Anomaly> anomalies = DependencyGraph.builder(4)
+                .addEdge(2, 1, EdgeType.WR)
+                .addEdge(3, 2, EdgeType.WR)
+                .addEdge(1, 3, EdgeType.WR)
+                .build().findAnomalies();
+        Assert.assertEquals(1, anomalies.size());
+        Assert.assertEquals(AnomalyType.G1C, anomalies.get(0).getType());
+        Assert.assertEquals(3, anomalies.get(0).getCycle().length);
+    }
+
+    @Test
+    public void gSingle() {
+        // read skew: T1 reads the initial x and then y written by T0, which also overwrote x
+        final List<DependencyGraph.Anomaly> anomalies = DependencyGraph.builder(2)
+                .addVersionOrder(X, 0)
+                .addVersionOrder(Y, 0)
+                .addRead(1, X, DependencyGraph.INITIAL)
+                .addRead(1, Y, 0)
+                .build().findAnomalies();
+        Assert.assertEquals(1, anomalies.size());
+        Assert.assertEquals(AnomalyType.G_SINGLE, anomalies.get(0).getType());
+    }
+
+    @Test
+    public void g2() {
+        // write skew: T0 and T1 both read the initial x and y, then T0 writes x and T1 writes y
+        final List<DependencyGraph.Anomaly> anomalies = DependencyGraph.builder(2)
+                .addVersionOrder(X, 0)
+                .addVersionOrder(Y, 1)
+                .addRead(0, X, DependencyGraph.INITIAL)
+                .addRead(0, Y, DependencyGraph.INITIAL)
+                .addRead(1, X, DependencyGraph.INITIAL)
+                .addRead(1, Y, DependencyGraph.INITIAL)
+                .build().findAnomalies();
+        Assert.assertEquals(1, anomalies.size());
+        Assert.assertEquals(AnomalyType.G2, anomalies.get(0).getType());
+        Assert.assertEquals("G2: 0 -rw-> 1 -rw-> 0", anomalies.get(0).toString());
+    }
+
+}
@@ -0,0 +1,39 @@
+package test;
+
+import checker.G0Checker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class G0CheckerTest {
+
+    @Test
+    public void consistentHistories() {
+        // writers 3 and 5 aborted halfway on some of the objects, which does not make the histories inconsistent
+        final G0Checker.Result result = G0Checker.check(
+                new long[]{0, 1, 2, 3, 4, 5},
+                new long[]{0, 1, 2, 4, 5},
+                new long[]{0, 1, 3, 2, 4});
+        Assert.assertTrue(result.toString(), result.isConsistent());
+        Assert.assertEquals(4, result.getCommonLength());
+    }
+
+    @Test
+    public void interleavedWriters() {
+        final G0Checker.Result result = G0Checker.check(
+                new long[]{0, 1, 2, 3},
+                new long[]{0, 2, 1, 3},
+                new long[]{0, 1, 2, 3});
+        Assert.assertFalse(result.isConsistent());
+        Assert.assertEquals(1, result.getDivergence());
+    }
+
+    @Test
+    public void sparseVersions() {
+        final G0Checker.Result result = G0Checker.check(
+                new long[]{Long.MIN_VALUE + 1, 7, Long.MAX_VALUE},
+                new long[]{Long.MIN_VALUE + 1, Long.MAX_VALUE, 7},
+                new long[]{Long.MIN_VALUE + 1, 7, Long.MAX_VALUE});
+        Assert.assertEquals(1, result.getDivergence());
+    }
+
+}
@@ -0,0 +1,40 @@
+package test;
+
+import checker.G1cOnlineChecker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class G1cOnlineCheckerTest {
+
+    @Test
+    public void cycleReportedWhenClosed() {
+        final G1cOnlineChecker checker = new G1cOnlineChecker(16);
+        checker.committed(1, 0);
+        checker.committed(2, 3);
+        Assert.assertTrue(checker.isConsistent());
+        checker.committed(3, 2);
+        Assert.assertEquals(1, checker.getCycles());
+    }
+
+    @Test
+    public void readOfAbortedTransaction() {
+        final G1cOnlineChecker checker = new G1cOnlineChecker(16);
+        // the reader completes before the writer it read from
+        checker.committed(2, 1);
+        Assert.assertEquals(1, checker.getPending());
+        checker.aborted(1);
+        Assert.assertEquals(0, checker.getPending());
+        Assert.assertEquals(1, checker.getAbortedReads());
+    }
+
+    @Test
+    public void constantMemoryOverLongRuns() {
+        final G1cOnlineChecker checker = new G1cOnlineChecker(1024);
+        for (long i = 1; i <= 1_000_000; i++) {
+            checker.committed(i, i - 1);
+        }
+        Assert.assertTrue(checker.isConsistent());
+        Assert.assertEquals(0, checker.getPending());
+    }
+
+}
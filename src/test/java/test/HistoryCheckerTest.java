@@ -0,0 +1,287 @@
+package test;
+
+import checker.DependencyGraph;
+import checker.DependencyGraph.AnomalyType;
+import checker.HistoryChecker;
+import com.google.common.collect.ImmutableMap;
+import driver.TestDriver;
+import history.RecordingTestDriver;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records histories through RecordingTestDriver and checks them offline with HistoryChecker
+public class HistoryCheckerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void g0History() throws Exception {
+        // T1 and T2 both append to persons 1 and 2, the version histories show them in opposite orders
+        final HistoryDriver driver = new HistoryDriver();
+        driver.versionHistories = ImmutableMap.of(
+                "p1VersionHistory", Arrays.asList(1L, 2L), "p2VersionHistory", Arrays.asList(2L, 1L));
+        final Path file = record(driver, recorder -> {
+            recorder.g0(ImmutableMap.of("person1Id", 1L, "person2Id", 2L, "transactionId", 1L));
+            recorder.g0(ImmutableMap.of("person1Id", 1L, "person2Id", 2L, "transactionId", 2L));
+            recorder.g0check(ImmutableMap.of("person1Id", 1L, "person2Id", 2L));
+        });
+
+        final List<DependencyGraph.Anomaly> anomalies = new HistoryChecker().check(file);
+        Assert.assertEquals(1, anomalies.size());
+        Assert.assertEquals(AnomalyType.G0, anomalies.get(0).getType());
+    }
+
+    @Test
+    public void g2History() throws Exception {
+        // write skew: T1 writes person 1 and reads the initial person 2, T2 writes person 2 and reads the initial person 1
+        final HistoryDriver driver = new HistoryDriver();
+        driver.person2Versions.put(1L, 0L);
+        driver.person2Versions.put(2L, 0L);
+        final Path file = record(driver, recorder -> {
+            recorder.g1c(ImmutableMap.of("person1Id", 1L, "person2Id", 2L, "transactionId", 1L));
+            recorder.g1c(ImmutableMap.of("person1Id", 2L, "person2Id", 1L, "transactionId", 2L));
+        });
+
+        final List<DependencyGraph.Anomaly> anomalies = new HistoryChecker().check(file);
+        Assert.assertEquals(1, anomalies.size());
+        Assert.assertEquals(AnomalyType.G2, anomalies.get(0).getType());
+        Assert.assertEquals("G2: 1 -rw-> 2 -rw-> 1", anomalies.get(0).toString());
+    }
+
+    @Test
+    public void serializableHistory() throws Exception {
+        // T2 reads the version of person 1 written by T1, which read the initial person 2
+        final HistoryDriver driver = new HistoryDriver();
+        driver.person2Versions.put(1L, 0L);
+        driver.person2Versions.put(2L, 1L);
+        final Path file = record(driver, recorder -> {
+            recorder.g1c(ImmutableMap.of("person1Id", 1L, "person2Id", 2L, "transactionId", 1L));
+            recorder.g1c(ImmutableMap.of("person1Id", 2L, "person2Id", 1L, "transactionId", 2L));
+        });
+
+        final HistoryChecker checker = new HistoryChecker();
+        Assert.assertTrue(checker.check(file).isEmpty());
+        Assert.assertEquals(0, checker.getReadsOfFailed());
+    }
+
+    private interface Recording {
+        void run(RecordingTestDriver<Void, Map<String, Object>, Void> recorder) throws Exception;
+    }
+
+    private Path record(HistoryDriver driver, Recording recording) throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("history.bin");
+        try (RecordingTestDriver<Void, Map<String, Object>, Void> recorder = RecordingTestDriver.wrap(driver, file)) {
+            recording.run(recorder);
+        }
+        return file;
+    }
+
+    // returns the given versions, the persons themselves are not stored
+    private static class HistoryDriver extends TestDriver<Void, Map<String, Object>, Void> {
+
+        Map<String, Object> versionHistories;
+        final Map<Long, Long> person2Versions = new HashMap<>();
+
+        @Override
+        public Map<String, Object> g0(Map<String, Object> parameters) {
+            return ImmutableMap.of();
+        }
+
+        @Override
+        public Map<String, Object> g0check(Map<String, Object> parameters) {
+            return versionHistories;
+        }
+
+        @Override
+        public Map<String, Object> g1c(Map<String, Object> parameters) {
+            return ImmutableMap.of("person2Version", person2Versions.get((long) parameters.get("transactionId")));
+        }
+
+        @Override
+        public Void startTransaction() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void commitTransaction(Void tt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void abortTransaction(Void tt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Void runQuery(Void tt, String querySpecification, Map<String, Object> queryParameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void nukeDatabase() {
+        }
+
+        @Override
+        public void atomicityInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void atomicityC(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void atomicityRB(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> atomicityCheck() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void g0Init(long numPairs) {
+        }
+
+        @Override
+        public void g1aInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> g1aW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> g1aR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void g1bInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> g1bW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> g1bR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void g1cInit() {
+        }
+
+        @Override
+        public void impInit(long numPersons) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> impW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> impR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void pmpInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> pmpW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> pmpR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void otvInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> otvW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> otvR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void frInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> frW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> frR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void luInit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> luW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> luR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void wsInit(long numPairs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> wsW(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> wsR(Map<String, Object> parameters) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
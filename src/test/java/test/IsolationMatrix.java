@@ -0,0 +1,211 @@
+package test;
+
+import com.google.common.collect.ImmutableMap;
+import driver.IsolationLevel;
+import janusgraph.JanusGraphDriver;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import postgres.PostgresDriver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Runs the AcidTest suite of each engine at every isolation level it supports and prints one table of the anomalies
+// found against the throughput, latency percentiles and aborts of the level. A failed assertion of a test is an anomaly,
+// any other failure an error. Run it with ./gradlew isolationMatrix, the table is also written to matrix.csv.
+// -Dacid.matrix=postgres,janusgraph selects the engines, -Dacid.matrix.levels=read_committed,serializable the levels.
+// -Dacid.matrix.vary=<property>=<value>,<value> adds a dimension: every cell runs once per value of the system property,
+// e.g. -Dacid.matrix.vary=acid.postgres.mode=round_trip,function compares two execution modes side by side.
+// -Dacid.matrix.tests=g0Test,luTest runs only these tests of the suites.
+// -Dacid.matrix.vary=acid.postgres.version=v9_5,v9_6,v10,v11 compares the Postgres versions of the embedded server.
+public class IsolationMatrix {
+
+    private static final Map<String, Engine> ENGINES = ImmutableMap.of(
+            "postgres", new Engine(PostgresTest.class, PostgresDriver.ISOLATION_LEVELS),
+            "janusgraph", new Engine(JanusGraphAcidTest.class, JanusGraphDriver.ISOLATION_LEVELS));
+
+    private static final class Engine {
+        final Class<?> testClass;
+        final List<IsolationLevel> isolationLevels;
+
+        Engine(Class<?> testClass, List<IsolationLevel> isolationLevels) {
+            this.testClass = testClass;
+            this.isolationLevels = isolationLevels;
+        }
+    }
+
+    private static final class Cell {
+        final String engine;
+        final IsolationLevel isolationLevel;
+        final String variant;
+        final List<String> anomalies = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        int tests;
+        long committed;
+        long aborted;
+        double elapsedMillis;
+        double p50Millis;
+        double p90Millis;
+        double p99Millis;
+        long locks;
+        double lockWaitMillis;
+        long commits;
+        double commitMillis;
+
+        Cell(String engine, IsolationLevel isolationLevel, String variant) {
+            this.engine = engine;
+            this.isolationLevel = isolationLevel;
+            this.variant = variant;
+        }
+
+        double getThroughput() {
+            return elapsedMillis > 0 ? committed / (elapsedMillis / 1000) : 0;
+        }
+
+        double getAbortRate() {
+            return 100.0 * aborted / Math.max(1, committed + aborted);
+        }
+
+        double getMeanLockWaitMillis() {
+            return locks > 0 ? lockWaitMillis / locks : 0;
+        }
+
+        double getMeanCommitMillis() {
+            return commits > 0 ? commitMillis / commits : 0;
+        }
+
+        // the lock waits of the Postgres locking modes (see PostgresDriver.LockingMode) and the commit latency
+        void readStatistics(Path csv) throws IOException {
+            if (!Files.exists(csv)) return;
+            for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+                final String[] columns = line.split(",");
+                if (columns[2].equals("locks")) {
+                    locks += Long.parseLong(columns[3]);
+                } else if (columns[2].equals("lockWaitMillis")) {
+                    lockWaitMillis += Double.parseDouble(columns[3]);
+                } else if (columns[2].equals("commits")) {
+                    commits += Long.parseLong(columns[3]);
+                } else if (columns[2].equals("commitMillis")) {
+                    commitMillis += Double.parseDouble(columns[3]);
+                }
+            }
+        }
+
+        // sums the transactions of the tests, the latency percentiles are the highest of the tests
+        void readLatencies(Path csv) throws IOException {
+            if (!Files.exists(csv)) return;
+            for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+                final String[] columns = line.split(",");
+                if (columns[2].equals("committed")) {
+                    committed += Long.parseLong(columns[3]);
+                    p50Millis = Math.max(p50Millis, Double.parseDouble(columns[5]));
+                    p90Millis = Math.max(p90Millis, Double.parseDouble(columns[6]));
+                    p99Millis = Math.max(p99Millis, Double.parseDouble(columns[7]));
+                    elapsedMillis += Double.parseDouble(columns[10]);
+                } else if (columns[2].equals("aborted")) {
+                    aborted += Long.parseLong(columns[3]);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        final List<String> engines = Arrays.asList(System.getProperty("acid.matrix", "postgres,janusgraph").split(","));
+        final String levels = System.getProperty("acid.matrix.levels");
+        final Path resultsDir = Paths.get(System.getProperty("acid.resultsDir", "build/acid-results"), "isolation-matrix");
+        final String vary = System.getProperty("acid.matrix.vary");
+        final String variedProperty = vary == null ? null : vary.substring(0, vary.indexOf('='));
+        final List<String> variants = vary == null ? Arrays.asList("-") : Arrays.asList(vary.substring(vary.indexOf('=') + 1).split(","));
+
+        final List<Cell> cells = new ArrayList<>();
+        for (String engineName : engines) {
+            final Engine engine = ENGINES.get(engineName.trim());
+            if (engine == null) {
+                throw new IllegalArgumentException("Unknown engine: " + engineName + ", expected one of " + ENGINES.keySet());
+            }
+            for (IsolationLevel isolationLevel : engine.isolationLevels) {
+                if (levels != null && !Arrays.asList(levels.toUpperCase().split(",")).contains(isolationLevel.name())) continue;
+                for (String variant : variants) {
+                    if (variedProperty != null) {
+                        System.setProperty(variedProperty, variant.trim());
+                    }
+                    cells.add(run(engineName.trim(), engine, isolationLevel, variant.trim(), resultsDir));
+                }
+            }
+        }
+
+        printTable(cells, System.out);
+        try (PrintStream csv = new PrintStream(Files.newOutputStream(resultsDir.resolve("matrix.csv")), false, "UTF-8")) {
+            csv.println("engine,isolation,variant,tests,anomalies,errors,committed,aborted,throughput_tps,p50_ms,p90_ms,p99_ms,abort_rate,mean_lock_wait_ms,mean_commit_ms,anomalous_tests");
+            for (Cell cell : cells) {
+                csv.printf(Locale.ROOT, "%s,%s,%s,%d,%d,%d,%d,%d,%.1f,%.3f,%.3f,%.3f,%.2f,%.3f,%.3f,%s\n",
+                        cell.engine, cell.isolationLevel.name().toLowerCase(), cell.variant, cell.tests, cell.anomalies.size(), cell.errors.size(),
+                        cell.committed, cell.aborted, cell.getThroughput(), cell.p50Millis, cell.p90Millis, cell.p99Millis, cell.getAbortRate(), cell.getMeanLockWaitMillis(),
+                        cell.getMeanCommitMillis(), String.join(" ", cell.anomalies));
+            }
+        }
+        System.exit(0);
+    }
+
+    private static Cell run(String engineName, Engine engine, IsolationLevel isolationLevel, String variant, Path resultsDir) throws IOException {
+        final Cell cell = new Cell(engineName, isolationLevel, variant);
+        final Path cellDir = resultsDir.resolve(engineName + "-" + isolationLevel.name().toLowerCase() + (variant.equals("-") ? "" : "-" + variant));
+        Files.createDirectories(cellDir);
+        Files.deleteIfExists(cellDir.resolve("latency.csv"));
+        Files.deleteIfExists(cellDir.resolve("statistics.csv"));
+
+        System.out.printf("=== %s at %s %s ===\n", engineName, isolationLevel.name().toLowerCase(), variant);
+        System.setProperty("acid.isolation", isolationLevel.name());
+        System.setProperty("acid.resultsDir", cellDir.toString());
+        final String tests = System.getProperty("acid.matrix.tests");
+        final Request request = tests == null ? Request.aClass(engine.testClass) : Request.aClass(engine.testClass).filterWith(new Filter() {
+            @Override
+            public boolean shouldRun(Description description) {
+                return description.getMethodName() == null || Arrays.asList(tests.split(",")).contains(description.getMethodName());
+            }
+
+            @Override
+            public String describe() {
+                return "tests " + tests;
+            }
+        });
+        final Result result = new JUnitCore().run(request);
+
+        cell.tests = result.getRunCount();
+        for (Failure failure : result.getFailures()) {
+            if (failure.getException() instanceof AssertionError) {
+                cell.anomalies.add(failure.getDescription().getMethodName());
+            } else {
+                cell.errors.add(failure.getDescription().getMethodName());
+            }
+        }
+        cell.readLatencies(cellDir.resolve("latency.csv"));
+        cell.readStatistics(cellDir.resolve("statistics.csv"));
+        return cell;
+    }
+
+    private static void printTable(List<Cell> cells, PrintStream out) {
+        out.printf("%-11s %-17s %-12s %5s %9s %6s %11s %9s %9s %9s %8s %7s %14s %11s  %s\n",
+                "Engine", "Isolation", "Variant", "Tests", "Anomalies", "Errors", "Tput [tx/s]", "p50 [ms]", "p90 [ms]", "p99 [ms]", "Aborted", "Aborts", "Lock wait [ms]", "Commit [ms]", "Anomalous tests");
+        for (Cell cell : cells) {
+            out.printf("%-11s %-17s %-12s %5d %9d %6d %11.1f %9.3f %9.3f %9.3f %8d %6.2f%% %14.3f %11.3f  %s\n",
+                    cell.engine, cell.isolationLevel.name().toLowerCase(), cell.variant, cell.tests, cell.anomalies.size(), cell.errors.size(),
+                    cell.getThroughput(), cell.p50Millis, cell.p90Millis, cell.p99Millis, cell.aborted, cell.getAbortRate(), cell.getMeanLockWaitMillis(), cell.getMeanCommitMillis(),
+                    String.join(", ", cell.anomalies));
+        }
+    }
+
+}
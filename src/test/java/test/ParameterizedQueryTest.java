@@ -0,0 +1,48 @@
+package test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import postgres.ParameterizedQuery;
+import postgres.PostgresQueries;
+
+public class ParameterizedQueryTest {
+
+    @Test
+    public void bindsParameters() {
+        final ParameterizedQuery query = ParameterizedQuery.of(PostgresQueries.g0[2]);
+        Assert.assertEquals("update knows set versionHistory = versionHistory || ?::bigint where person1id = ? and person2id = ?", query.getSql());
+        Assert.assertArrayEquals(new String[]{"transactionId", "person1Id", "person2Id"}, query.getParameterNames());
+    }
+
+    @Test
+    public void dropsQuotesOfQuotedParameters() {
+        final ParameterizedQuery query = ParameterizedQuery.of(PostgresQueries.atomicityCTx[0]);
+        Assert.assertEquals("update person set emails = array_append(emails, ?) where id = ?", query.getSql());
+        Assert.assertArrayEquals(new String[]{"newEmail", "person1Id"}, query.getParameterNames());
+    }
+
+    @Test
+    public void keepsOtherDollarsAndQuotes() {
+        final ParameterizedQuery query = ParameterizedQuery.of("select '$', $1, $$x$$, $body$y$body$ where id = $id");
+        Assert.assertEquals("select '$', $1, $$x$$, $body$y$body$ where id = ?", query.getSql());
+        Assert.assertArrayEquals(new String[]{"id"}, query.getParameterNames());
+    }
+
+    @Test
+    public void numbersParametersAcrossBatchedStatements() {
+        final ParameterizedQuery query = ParameterizedQuery.ofBatch(PostgresQueries.g0);
+        Assert.assertEquals(3, query.getSql().split(";\n").length);
+        Assert.assertEquals(7, query.getParameterNames().length);
+        Assert.assertSame(query, ParameterizedQuery.ofBatch(PostgresQueries.g0));
+    }
+
+    @Test
+    public void keepsFunctionBodies() {
+        for (String function : PostgresQueries.functionsCreate) {
+            Assert.assertEquals(function, ParameterizedQuery.of(function).getSql());
+        }
+        final ParameterizedQuery call = ParameterizedQuery.of(PostgresQueries.atomicityCTxCall[0]);
+        Assert.assertEquals("select acid_atomicity_c(?, ?, ?::varchar, ?::varchar)", call.getSql());
+    }
+
+}
@@ -0,0 +1,127 @@
+package test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import postgres.PostgresConnectionPool;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PostgresConnectionPoolTest {
+
+    // physical connections whose handles fire connectionClosed when they are closed, like the ones of pgjdbc
+    private final AtomicInteger physicalConnections = new AtomicInteger();
+    private final AtomicInteger physicalCloses = new AtomicInteger();
+    // the next handles that fail to open, firing a connection error like a broken pgjdbc connection
+    private final AtomicInteger failingHandles = new AtomicInteger();
+
+    private final ConnectionPoolDataSource dataSource = (ConnectionPoolDataSource) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{ConnectionPoolDataSource.class}, (proxy, method, args) -> {
+                if (method.getName().equals("getPooledConnection")) {
+                    physicalConnections.incrementAndGet();
+                    return pooledConnection();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    private PooledConnection pooledConnection() {
+        final List<ConnectionEventListener> listeners = new ArrayList<>();
+        final PooledConnection[] self = new PooledConnection[1];
+        self[0] = (PooledConnection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{PooledConnection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "addConnectionEventListener":
+                            listeners.add((ConnectionEventListener) args[0]);
+                            return null;
+                        case "removeConnectionEventListener":
+                            listeners.remove(args[0]);
+                            return null;
+                        case "close":
+                            physicalCloses.incrementAndGet();
+                            return null;
+                        case "getConnection":
+                            if (failingHandles.getAndDecrement() > 0) {
+                                final SQLException e = new SQLException("This connection has been closed.", "08003");
+                                new ArrayList<>(listeners).forEach(l -> l.connectionErrorOccurred(new ConnectionEvent(self[0], e)));
+                                throw e;
+                            }
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (handle, m, a) -> {
+                                if (m.getName().equals("close")) {
+                                    new ArrayList<>(listeners).forEach(l -> l.connectionClosed(new ConnectionEvent(self[0])));
+                                    return null;
+                                }
+                                if (m.getName().equals("isValid")) return true;
+                                throw new UnsupportedOperationException(m.getName());
+                            });
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return self[0];
+    }
+
+    @Test
+    public void reusesConnections() throws Exception {
+        final PostgresConnectionPool pool = new PostgresConnectionPool(dataSource, 4, 1000);
+        for (int i = 0; i < 100; i++) {
+            try (Connection connection = pool.getConnection()) {
+                Assert.assertNotNull(connection);
+            }
+        }
+        Assert.assertEquals(1, physicalConnections.get());
+        Assert.assertEquals(100L, pool.getStatistics().get("acquires"));
+
+        pool.close();
+        Assert.assertEquals(1, physicalCloses.get());
+    }
+
+    @Test
+    public void boundsConnections() throws Exception {
+        final PostgresConnectionPool pool = new PostgresConnectionPool(dataSource, 2, 50);
+        final Connection first = pool.getConnection();
+        final Connection second = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("The third connection should time out");
+        } catch (SQLTransientConnectionException e) {
+            Assert.assertEquals(1L, pool.getStatistics().get("acquireTimeouts"));
+        }
+        first.close();
+        pool.getConnection().close();
+        second.close();
+        Assert.assertEquals(2, physicalConnections.get());
+        pool.close();
+    }
+
+    @Test
+    public void discardsBrokenIdleConnections() throws Exception {
+        final PostgresConnectionPool pool = new PostgresConnectionPool(dataSource, 1, 50);
+        pool.getConnection().close();
+        failingHandles.set(1);
+
+        // the broken idle connection is replaced, and the pool still hands out exactly one connection at a time
+        final Connection connection = pool.getConnection();
+        Assert.assertEquals(2, physicalConnections.get());
+        Assert.assertEquals(1, physicalCloses.get());
+        try {
+            pool.getConnection();
+            Assert.fail("The second connection should time out");
+        } catch (SQLTransientConnectionException e) {
+            Assert.assertEquals(1L, pool.getStatistics().get("acquireTimeouts"));
+        }
+        connection.close();
+        pool.getConnection().close();
+        Assert.assertEquals(2, physicalConnections.get());
+        pool.close();
+    }
+
+}
@@ -6,10 +6,13 @@ import postgres.PostgresDriver;
 import ru.yandex.qatools.embed.postgresql.EmbeddedPostgres;
 import ru.yandex.qatools.embed.postgresql.config.PostgresConfig;
 
-import java.io.IOException;
+import ru.yandex.qatools.embed.postgresql.distribution.Version;
 
-import static ru.yandex.qatools.embed.postgresql.distribution.Version.Main.V9_6;
+import java.io.IOException;
+import java.nio.file.Paths;
 
+// -Dacid.postgres.version=v9_5|v9_6|v10|v11|production selects the embedded server (default v9_6). The binaries are
+// downloaded and extracted once into -Dacid.postgres.cacheDir (default ~/.embedpostgresql) and reused by later runs.
 public class PostgresTest extends AcidTest<PostgresDriver> {
 
     static EmbeddedPostgres postgres;
@@ -28,9 +31,20 @@ public class PostgresTest extends AcidTest<PostgresDriver> {
 
     @BeforeClass
     public static void setUp() throws IOException {
-        postgres = new EmbeddedPostgres(V9_6);
-        final String url = postgres.start();
-        // TODO
+        final Version.Main version = Version.Main.valueOf(System.getProperty("acid.postgres.version", "v9_6").trim().toUpperCase());
+        final String cacheDir = System.getProperty("acid.postgres.cacheDir", Paths.get(System.getProperty("user.home"), ".embedpostgresql").toString());
+        postgres = new EmbeddedPostgres(version);
+        postgres.start(EmbeddedPostgres.cachedRuntimeConfig(Paths.get(cacheDir)));
+        System.out.printf("Postgres %s\n", version.asInDownloadPath());
+
+        // -Dacid.postgres.serverProfile configures the durability settings of the server before the suite runs
+        final PostgresDriver driver = new PostgresDriver();
+        final PostgresConfig c = postgres.getConfig().get();
+        driver.initDataSource(c.net().host(), c.net().port(), c.credentials().username(), c.credentials().password(), c.storage().dbName(), 0);
+        if (driver.getServerProfile() != null) {
+            driver.applyServerProfile();
+            System.out.printf("Server profile: %s\n", driver.getServerProfile().name().toLowerCase());
+        }
     }
 
     @AfterClass
@@ -0,0 +1,41 @@
+package test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import transactions.AbortCause;
+import transactions.RetryPolicy;
+
+import java.time.Duration;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(25));
+
+    @Test
+    public void retriesConflictsUpToTheMaxAttempts() {
+        Assert.assertTrue(retryPolicy.shouldRetry(AbortCause.SERIALIZATION_FAILURE, 1));
+        Assert.assertTrue(retryPolicy.shouldRetry(AbortCause.DEADLOCK, 2));
+        Assert.assertFalse(retryPolicy.shouldRetry(AbortCause.SERIALIZATION_FAILURE, 3));
+        // the transaction may have committed before a timeout or an unknown failure
+        Assert.assertFalse(retryPolicy.shouldRetry(AbortCause.TIMEOUT, 1));
+        Assert.assertFalse(retryPolicy.shouldRetry(AbortCause.OTHER, 1));
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyUpToTheMaxBackoff() {
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(retryPolicy.backoffNanos(1) <= Duration.ofMillis(10).toNanos());
+            Assert.assertTrue(retryPolicy.backoffNanos(2) <= Duration.ofMillis(20).toNanos());
+            Assert.assertTrue(retryPolicy.backoffNanos(40) <= Duration.ofMillis(25).toNanos());
+            Assert.assertTrue(retryPolicy.backoffNanos(40) >= 0);
+        }
+    }
+
+    @Test
+    public void singleAttemptDisablesRetries() {
+        final RetryPolicy noRetries = new RetryPolicy(1, Duration.ofMillis(10), Duration.ofMillis(25));
+        Assert.assertFalse(noRetries.isEnabled());
+        Assert.assertFalse(noRetries.shouldRetry(AbortCause.SERIALIZATION_FAILURE, 1));
+    }
+
+}